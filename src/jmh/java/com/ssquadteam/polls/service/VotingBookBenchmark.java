@@ -0,0 +1,70 @@
+package com.ssquadteam.polls.service;
+
+import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollStatus;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Per-open cost of a six-option voting book with the bundled config, minus the item itself, which needs a server.
+ * Run with {@code ./gradlew jmh}; the gc profiler reports the bytes allocated per open as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VotingBookBenchmark {
+
+    /** Whether the reader can still vote (clickable rows) or sees the closed book with the majority marked. */
+    @Param({"open", "closed"})
+    public String state;
+
+    private BookFactory.VotingLayout layout;
+    private Poll poll;
+    private int[] counts;
+    private String closesAt;
+    private final UnaryOperator<String> sanitize = UnaryOperator.identity();
+
+    @Setup
+    public void setUp() throws Exception {
+        YamlConfiguration config;
+        try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/config.yml"), StandardCharsets.UTF_8)) {
+            config = YamlConfiguration.loadConfiguration(reader);
+        }
+        layout = BookFactory.VotingLayout.load(config, MiniMessage.miniMessage());
+        long now = System.currentTimeMillis() / 1000;
+        poll = new Poll(UUID.randomUUID(), "Which biome should the next event be in?",
+                List.of("Desert", "Jungle", "Mushroom fields", "Deep dark", "Cherry grove", "Badlands"),
+                now, now + 3600, "open".equals(state) ? PollStatus.OPEN : PollStatus.CLOSED);
+        poll.setCode("biome");
+        counts = new int[] {12, 30, 7, 19, 25, 3};
+        closesAt = "2026-10-18 18:00 UTC";
+    }
+
+    @Benchmark
+    public Component[] votingPages() {
+        return BookFactory.votingPages(layout, poll, null, counts, closesAt, sanitize);
+    }
+}
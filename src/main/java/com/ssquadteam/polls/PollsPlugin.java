@@ -1,25 +1,32 @@
 package com.ssquadteam.polls;
 
+import com.ssquadteam.polls.cluster.ClusterEventBus;
+import com.ssquadteam.polls.cluster.ClusterTransport;
+import com.ssquadteam.polls.cluster.PostgresNotifyTransport;
 import com.ssquadteam.polls.commands.PollCommand;
 import com.ssquadteam.polls.listener.BookListener;
 import com.ssquadteam.polls.listener.ChatListener;
-import com.ssquadteam.polls.model.Poll;
-import com.ssquadteam.polls.model.PollStatus;
+import com.ssquadteam.polls.metrics.MetricsRegistry;
 import com.ssquadteam.polls.service.BookFactory;
 import com.ssquadteam.polls.service.MessageService;
 import com.ssquadteam.polls.service.PollManager;
 import com.ssquadteam.polls.service.SessionManager;
+import com.ssquadteam.polls.storage.AsyncPollStorage;
+import com.ssquadteam.polls.storage.InstrumentedPollStorage;
 import com.ssquadteam.polls.storage.JsonPollStorage;
 import com.ssquadteam.polls.storage.PollStorage;
 import com.ssquadteam.polls.storage.PostgresPollStorage;
+import com.ssquadteam.polls.storage.SlowOpLog;
+import com.ssquadteam.polls.storage.VoterFilters;
+import com.ssquadteam.polls.storage.WatchdogPollStorage;
 import com.tcoded.folialib.FoliaLib;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Bukkit;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
 import java.time.Instant;
-import java.util.List;
 import java.util.UUID;
 
 public final class PollsPlugin extends JavaPlugin {
@@ -27,11 +34,16 @@ public final class PollsPlugin extends JavaPlugin {
     private static PollsPlugin instance;
 
     private PollStorage storage;
+    private AsyncPollStorage asyncStorage;
     private PollManager pollManager;
     private SessionManager sessionManager;
     private MessageService messageService;
     private BookFactory bookFactory;
     private FoliaLib folia;
+    private ClusterEventBus clusterBus;
+    private SlowOpLog slowOpLog;
+    private WatchdogPollStorage watchdog;
+    private final MetricsRegistry metrics = new MetricsRegistry();
 
     public static PollsPlugin getInstance() {
         return instance;
@@ -59,13 +71,35 @@ public final class PollsPlugin extends JavaPlugin {
             }
         }
         this.storage.init();
+        this.slowOpLog = new SlowOpLog(new File(getDataFolder(), getConfig().getString("watchdog.log.file", "slow-ops.log")),
+                getConfig().getLong("watchdog.log.max-size-kb", 1024) * 1024, getConfig().getInt("watchdog.log.files", 3), getLogger());
+        // On Folia isPrimaryThread is true on every region tick thread, not only the global one
+        this.watchdog = new WatchdogPollStorage(storage, slowOpLog, getLogger(), Bukkit::isPrimaryThread,
+                getConfig().getBoolean("watchdog.enabled", false), getConfig().getLong("watchdog.slow-threshold-ms", 50));
+        if (storage instanceof PostgresPollStorage postgres && postgres.getWriteBehind() != null) {
+            postgres.getWriteBehind().watchWith(watchdog);
+        }
+        this.asyncStorage = new AsyncPollStorage(new InstrumentedPollStorage(watchdog, metrics), getLogger(),
+                getConfig().getInt("storage.async.max-concurrency", 16), watchdog);
 
-        this.pollManager = new PollManager(this, storage);
+        this.pollManager = new PollManager(this, asyncStorage);
         this.sessionManager = new SessionManager(this);
 
-        // Load open polls and schedule closings
-        List<Poll> polls = storage.getAllPolls();
-        polls.stream().filter(p -> p.getStatus() == PollStatus.OPEN).forEach(pollManager::trackOpenPoll);
+        if (getConfig().getBoolean("cluster.enabled", false)) startCluster();
+        // Votes cast on other servers never pass through this server's filters, so with a database that other servers
+        // may share they stay off unless the config says this server is alone
+        boolean alone = !(storage instanceof PostgresPollStorage) || getConfig().getBoolean("storage.vote-filter.single-server", false);
+        if (getConfig().getBoolean("storage.vote-filter.enabled", true) && alone && clusterBus == null) {
+            asyncStorage.enableVoterFilters(new VoterFilters(
+                    getConfig().getInt("storage.vote-filter.expected-voters", 1000),
+                    getConfig().getDouble("storage.vote-filter.false-positive-rate", 0.01)));
+        }
+
+        registerGauges();
+        if (getConfig().getBoolean("metrics.jmx", true)) metrics.registerMBean(getLogger());
+
+        // Close polls that expired while offline and schedule the rest
+        pollManager.resumeOpenPolls();
 
         // Register command and listeners
         PollCommand pollCommand = new PollCommand(this);
@@ -78,10 +112,66 @@ public final class PollsPlugin extends JavaPlugin {
         getLogger().info("Polls enabled with storage: " + type);
     }
 
+    private void startCluster() {
+        if (!(storage instanceof PostgresPollStorage postgres)) {
+            getLogger().warning("cluster.enabled needs storage.type postgres; running without cluster events");
+            return;
+        }
+        String transportType = getConfig().getString("cluster.transport", "postgres").toLowerCase();
+        ClusterTransport transport = switch (transportType) {
+            case "postgres", "postgresql" -> new PostgresNotifyTransport(postgres.getPool(), getConfig().getString("cluster.channel", "polls_events"), getLogger());
+            default -> {
+                getLogger().warning("Unknown cluster.transport '" + transportType + "', defaulting to postgres");
+                yield new PostgresNotifyTransport(postgres.getPool(), getConfig().getString("cluster.channel", "polls_events"), getLogger());
+            }
+        };
+        clusterBus = new ClusterEventBus(transport, getLogger());
+        postgres.attachCluster(clusterBus);
+        pollManager.attachCluster(clusterBus);
+        clusterBus.start();
+        getLogger().info("Cluster events enabled over " + transportType);
+    }
+
+    /** Values that are read from their owners when metrics are shown, rather than counted twice. */
+    private void registerGauges() {
+        metrics.gauge("polls.open", pollManager::getOpenPollCount);
+        metrics.gauge("storage.queued-calls", asyncStorage::getQueuedCalls);
+        metrics.gauge("watchdog.blocking-calls", watchdog::getBlockingCalls);
+        metrics.gauge("watchdog.slow-calls", watchdog::getSlowCalls);
+        metrics.gauge("votes.admitted", () -> pollManager.getVoteAdmission().admitted());
+        metrics.gauge("votes.collapsed", () -> pollManager.getVoteAdmission().collapsed());
+        metrics.gauge("votes.throttled", () -> pollManager.getVoteAdmission().throttled());
+        metrics.gauge("votes.already-voted", () -> pollManager.getVoteAdmission().alreadyVoted());
+        VoterFilters filters = asyncStorage.getVoterFilters();
+        if (filters != null) {
+            metrics.gauge("vote-filter.not-voted", filters::notVotedAnswers);
+            metrics.gauge("vote-filter.maybe", filters::maybeAnswers);
+            metrics.gauge("vote-filter.false-positives", filters::falsePositives);
+            metrics.gauge("vote-filter.bytes", filters::memoryBytes);
+        }
+        if (storage instanceof PostgresPollStorage postgres) {
+            metrics.gauge("pool.active", postgres.getPool()::getActiveConnections);
+            metrics.gauge("pool.waiting", postgres.getPool()::getWaitingThreads);
+            metrics.gauge("pool.timeouts", postgres.getPool()::getTimeouts);
+            if (postgres.getWriteBehind() != null) {
+                metrics.gauge("write-behind.queued", postgres.getWriteBehind()::getQueuedVotes);
+                metrics.gauge("write-behind.dropped", postgres.getWriteBehind()::getDroppedVotes);
+            }
+        }
+        if (clusterBus != null) {
+            metrics.gauge("cluster.published", clusterBus::getPublished);
+            metrics.gauge("cluster.received", clusterBus::getReceived);
+        }
+    }
+
     @Override
     public void onDisable() {
+        metrics.unregisterMBean();
+        if (clusterBus != null) clusterBus.close();
         if (pollManager != null) pollManager.shutdown();
+        if (asyncStorage != null) asyncStorage.close(getConfig().getLong("storage.async.shutdown-timeout-ms", 5000));
         if (storage != null) storage.close();
+        if (slowOpLog != null) slowOpLog.close();
         if (folia != null) folia.getScheduler().cancelAllTasks();
     }
 
@@ -90,4 +180,6 @@ public final class PollsPlugin extends JavaPlugin {
     public MessageService getMessageService() { return messageService; }
     public BookFactory getBookFactory() { return bookFactory; }
     public FoliaLib getFolia() { return folia; }
+    public MetricsRegistry getMetrics() { return metrics; }
+    public WatchdogPollStorage getWatchdog() { return watchdog; }
 }
@@ -0,0 +1,42 @@
+package com.ssquadteam.polls.cluster;
+
+import java.util.UUID;
+
+/**
+ * A change made on one server that the other servers sharing the database need to hear about.
+ */
+public class ClusterEvent {
+
+    public enum Type {
+        POLL_CREATED,
+        POLL_EDITED,
+        POLL_CLOSED,
+        POLL_REMOVED,
+        /** Votes for the poll were written; cached counts are stale. */
+        TALLY_CHANGED,
+        /** Never sent: raised locally when the transport reconnected and events may have been missed. */
+        RESYNC
+    }
+
+    private Type type;
+    private UUID pollId;
+    private UUID origin;
+    // POLL_CLOSED only: the final counts, computed once by the server that closed the poll
+    private int[] counts;
+
+    public ClusterEvent(Type type, UUID pollId, UUID origin) {
+        this(type, pollId, origin, null);
+    }
+
+    public ClusterEvent(Type type, UUID pollId, UUID origin, int[] counts) {
+        this.type = type;
+        this.pollId = pollId;
+        this.origin = origin;
+        this.counts = counts;
+    }
+
+    public Type getType() { return type; }
+    public UUID getPollId() { return pollId; }
+    public UUID getOrigin() { return origin; }
+    public int[] getCounts() { return counts; }
+}
@@ -0,0 +1,81 @@
+package com.ssquadteam.polls.cluster;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Publishes {@link ClusterEvent}s over a {@link ClusterTransport} and hands events from other servers to the
+ * subscribers, in subscription order. Events this server sent itself are dropped on arrival.
+ */
+public class ClusterEventBus implements ClusterTransport.Receiver {
+
+    private final UUID nodeId = UUID.randomUUID();
+    private final ClusterTransport transport;
+    private final Logger logger;
+    private final Gson gson = new Gson();
+    private final List<Consumer<ClusterEvent>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+
+    public ClusterEventBus(ClusterTransport transport, Logger logger) {
+        this.transport = transport;
+        this.logger = logger;
+    }
+
+    public UUID getNodeId() { return nodeId; }
+
+    public void subscribe(Consumer<ClusterEvent> subscriber) { subscribers.add(subscriber); }
+
+    public void start() { transport.start(this); }
+
+    public void publish(ClusterEvent.Type type, UUID pollId) {
+        publish(type, pollId, null);
+    }
+
+    public void publish(ClusterEvent.Type type, UUID pollId, int[] counts) {
+        published.increment();
+        transport.publish(gson.toJson(new ClusterEvent(type, pollId, nodeId, counts)));
+    }
+
+    @Override
+    public void onMessage(String message) {
+        ClusterEvent event;
+        try {
+            event = gson.fromJson(message, ClusterEvent.class);
+        } catch (JsonParseException e) {
+            logger.warning("Ignoring malformed cluster event: " + e.getMessage());
+            return;
+        }
+        if (event == null || event.getType() == null || nodeId.equals(event.getOrigin())) return;
+        received.increment();
+        deliver(event);
+    }
+
+    @Override
+    public void onReconnect() {
+        deliver(new ClusterEvent(ClusterEvent.Type.RESYNC, null, nodeId));
+    }
+
+    private void deliver(ClusterEvent event) {
+        for (Consumer<ClusterEvent> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                logger.warning("Cluster event " + event.getType() + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() { transport.close(); }
+
+    public long getPublished() { return published.sum(); }
+    public long getReceived() { return received.sum(); }
+}
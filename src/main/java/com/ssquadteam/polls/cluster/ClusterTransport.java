@@ -0,0 +1,22 @@
+package com.ssquadteam.polls.cluster;
+
+/**
+ * Carries serialized {@link ClusterEvent}s between servers. Delivery is best effort; a transport that may have
+ * dropped messages says so through {@link Receiver#onReconnect()}.
+ */
+public interface ClusterTransport {
+
+    interface Receiver {
+        void onMessage(String message);
+
+        /** The connection was re-established and messages sent in between may have been missed. */
+        default void onReconnect() {}
+    }
+
+    void start(Receiver receiver);
+
+    /** Sends the message to every server, including this one. */
+    void publish(String message);
+
+    void close();
+}
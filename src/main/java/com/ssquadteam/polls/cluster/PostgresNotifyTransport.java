@@ -0,0 +1,111 @@
+package com.ssquadteam.polls.cluster;
+
+import com.ssquadteam.polls.storage.ConnectionPool;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Transport over Postgres {@code LISTEN/NOTIFY}. One dedicated connection outside the pool listens on the channel;
+ * messages are sent with {@code pg_notify} on pooled connections. A lost listener connection is reopened and reported
+ * through {@link Receiver#onReconnect()}, since notifications sent in between are gone.
+ */
+public class PostgresNotifyTransport implements ClusterTransport {
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final ConnectionPool pool;
+    private final String channel;
+    private final Logger logger;
+    private volatile boolean running;
+    private volatile Connection listener;
+    private Thread thread;
+
+    public PostgresNotifyTransport(ConnectionPool pool, String channel, Logger logger) {
+        if (!CHANNEL.matcher(channel).matches()) throw new IllegalArgumentException("Invalid cluster channel name: " + channel);
+        this.pool = pool;
+        this.channel = channel;
+        this.logger = logger;
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        running = true;
+        thread = new Thread(() -> listen(receiver), "polls-cluster-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void listen(Receiver receiver) {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = pool.openUnpooled()) {
+                listener = connection;
+                try (Statement st = connection.createStatement()) {
+                    st.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    logger.info("Cluster listener reconnected");
+                    receiver.onReconnect();
+                }
+                connectedBefore = true;
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) receiver.onMessage(notification.getParameter());
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                logger.warning("Cluster listener lost its connection (" + e.getMessage() + "), retrying in " + RETRY_DELAY_MS + "ms");
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } finally {
+                listener = null;
+            }
+        }
+    }
+
+    @Override
+    public void publish(String message) {
+        try {
+            pool.execute(c -> {
+                PreparedStatement ps = c.prepare("SELECT pg_notify(?, ?)");
+                ps.setString(1, channel);
+                ps.setString(2, message);
+                ps.execute();
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.warning("Failed to publish cluster event: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        Connection connection = listener;
+        if (connection != null) {
+            try { connection.close(); } catch (SQLException ignored) {}
+        }
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package com.ssquadteam.polls.commands;
 
 import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.metrics.LatencyTimer;
+import com.ssquadteam.polls.metrics.MetricsRegistry;
 import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
 import com.ssquadteam.polls.model.PollStatus;
 import com.ssquadteam.polls.service.MessageService;
 import com.ssquadteam.polls.service.PollManager;
 import com.ssquadteam.polls.service.SessionManager;
 import com.ssquadteam.polls.service.session.PollCreationSession;
+import com.ssquadteam.polls.storage.AsyncPollStorage;
 import com.ssquadteam.polls.storage.PollStorage;
+import com.ssquadteam.polls.storage.WatchdogPollStorage;
 import com.ssquadteam.polls.util.DurationUtil;
 import net.kyori.adventure.text.Component;
 import org.bukkit.Bukkit;
@@ -21,6 +27,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class PollCommand implements CommandExecutor, TabCompleter {
@@ -29,13 +36,35 @@ public class PollCommand implements CommandExecutor, TabCompleter {
     private final MessageService messages;
     private final PollManager pollManager;
     private final PollStorage storage;
+    private final AsyncPollStorage asyncStorage;
     private final SessionManager sessions;
 
+    private static final int MAX_LIST_TRAILS = 256;
+
+    /** Start cursor of every page a sender has walked through, so revisiting a page is a single query. */
+    private static final class ListTrail {
+        final PollStatus status;
+        final List<PollCursor> starts = new ArrayList<>();
+
+        ListTrail(PollStatus status) {
+            this.status = status;
+            starts.add(null);
+        }
+    }
+
+    private final Map<String, ListTrail> listTrails = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ListTrail> eldest) {
+            return size() > MAX_LIST_TRAILS;
+        }
+    });
+
     public PollCommand(PollsPlugin plugin) {
         this.plugin = plugin;
         this.messages = plugin.getMessageService();
         this.pollManager = plugin.getPollManager();
         this.storage = pollManager.getStorage();
+        this.asyncStorage = pollManager.getAsyncStorage();
         this.sessions = plugin.getSessionManager();
     }
 
@@ -50,13 +79,16 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             case "create" -> handleCreate(sender, Arrays.copyOfRange(args, 1, args.length));
             case "close" -> handleClose(sender, Arrays.copyOfRange(args, 1, args.length));
             case "remove" -> handleRemove(sender, Arrays.copyOfRange(args, 1, args.length));
-            case "list" -> handleList(sender);
+            case "list" -> handleList(sender, Arrays.copyOfRange(args, 1, args.length));
             case "view" -> handleView(sender, Arrays.copyOfRange(args, 1, args.length));
             case "vote" -> handleVote(sender, Arrays.copyOfRange(args, 1, args.length));
             case "publish" -> handlePublish(sender);
             case "cancel" -> handleCancel(sender, Arrays.copyOfRange(args, 1, args.length));
             case "cancelcreation" -> handleCancel(sender, new String[0]);
             case "edit" -> handleEdit(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "repairtallies" -> handleRepairTallies(sender);
+            case "stats" -> handleStats(sender, Arrays.copyOfRange(args, 1, args.length));
+            case "watchdog" -> handleWatchdog(sender, Arrays.copyOfRange(args, 1, args.length));
             default -> messages.send(sender, "errors.invalid_args", Map.of());
         }
         return true;
@@ -72,6 +104,9 @@ public class PollCommand implements CommandExecutor, TabCompleter {
         messages.send(sender, "help.usage_close", Map.of("label", label));
         messages.send(sender, "help.usage_remove", Map.of("label", label));
         messages.send(sender, "help.usage_cancelcreation", Map.of("label", label));
+        if (sender.hasPermission("polls.admin")) messages.send(sender, "help.usage_repairtallies", Map.of("label", label));
+        if (sender.hasPermission("polls.admin")) messages.send(sender, "help.usage_stats", Map.of("label", label));
+        if (sender.hasPermission("polls.admin")) messages.send(sender, "help.usage_watchdog", Map.of("label", label));
     }
 
     private void handleCreate(CommandSender sender, String[] args) {
@@ -98,12 +133,6 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             messages.send(player, "errors.missing_id", Map.of());
             return;
         }
-        // Ensure not in use already for new creation
-        if (pollManager.getStorage().findByIdOrCode(providedId) != null) {
-            messages.send(player, "errors.code_in_use", Map.of());
-            return;
-        }
-
         Long durationSeconds = null;
         String question = null;
         if (args.length >= 2) {
@@ -119,15 +148,27 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             }
         }
 
-        PollCreationSession session = sessions.startSession(player.getUniqueId());
-        session.setCode(providedId);
-        if (question != null && !question.isBlank()) session.setQuestion(question);
-        if (durationSeconds != null) session.setDurationSeconds(durationSeconds);
+        Long duration = durationSeconds;
+        String initialQuestion = question;
+        // Ensure not in use already for new creation
+        asyncStorage.findByIdOrCode(providedId).thenAccept(existing -> {
+            if (existing != null) {
+                messages.send(player, "errors.code_in_use", Map.of());
+                return;
+            }
+            // Sessions belong to the player's thread, not the storage thread this runs on
+            plugin.getFolia().getScheduler().runAtEntity(player, task -> {
+                PollCreationSession session = sessions.startSession(player.getUniqueId());
+                session.setCode(providedId);
+                if (initialQuestion != null && !initialQuestion.isBlank()) session.setQuestion(initialQuestion);
+                if (duration != null) session.setDurationSeconds(duration);
 
-        messages.send(player, "creation.started", Map.of());
-        messages.send(player, "creation.book_hint", Map.of());
-        plugin.getBookFactory().openCreationBook(player, session);
-        plugin.getMessageService().playSound(player, "ui.open_creation");
+                messages.send(player, "creation.started", Map.of());
+                messages.send(player, "creation.book_hint", Map.of());
+                plugin.getBookFactory().openCreationBook(player, session);
+                plugin.getMessageService().playSound(player, "ui.open_creation");
+            });
+        }).exceptionally(asyncStorage.failure("start poll creation"));
     }
 
     private void handleClose(CommandSender sender, String[] args) {
@@ -139,15 +180,19 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             messages.send(sender, "errors.invalid_args", Map.of());
             return;
         }
-        Poll poll = storage.findByIdOrCode(args[0]);
-        if (poll == null) { messages.send(sender, "errors.invalid_poll", Map.of()); return; }
-        if (poll.getStatus() == PollStatus.CLOSED) {
-            messages.send(sender, "close.success", Map.of("code", poll.getCode()));
-            return;
-        }
-        pollManager.closePoll(poll, true);
-        messages.send(sender, "close.success", Map.of("code", poll.getCode()));
-        if (sender instanceof Player p) plugin.getMessageService().playSound(p, "ui.set_value");
+        asyncStorage.findByIdOrCode(args[0]).thenCompose(poll -> {
+            if (poll == null) { messages.send(sender, "errors.invalid_poll", Map.of()); return CompletableFuture.completedFuture(null); }
+            if (poll.getStatus() == PollStatus.CLOSED) {
+                messages.send(sender, "close.success", Map.of("code", poll.getCode()));
+                return CompletableFuture.completedFuture(null);
+            }
+            return pollManager.closePoll(poll, true).thenRun(() -> {
+                messages.send(sender, "close.success", Map.of("code", poll.getCode()));
+                if (sender instanceof Player p) plugin.getMessageService().playSound(p, "ui.set_value");
+            });
+        }).whenComplete((v, e) -> {
+            if (e != null) messages.send(sender, "errors.storage_failed", Map.of());
+        }).exceptionally(asyncStorage.failure("close poll"));
     }
 
     private void handleRemove(CommandSender sender, String[] args) {
@@ -159,33 +204,173 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             messages.send(sender, "errors.invalid_args", Map.of());
             return;
         }
-        Poll poll = storage.findByIdOrCode(args[0]);
-        if (poll == null) { messages.send(sender, "errors.invalid_poll", Map.of()); return; }
-        pollManager.removePoll(poll.getId());
-        messages.send(sender, "remove.success", Map.of("code", poll.getCode()));
-        if (sender instanceof Player p) plugin.getMessageService().playSound(p, "ui.cancel");
+        asyncStorage.findByIdOrCode(args[0]).thenCompose(poll -> {
+            if (poll == null) { messages.send(sender, "errors.invalid_poll", Map.of()); return CompletableFuture.completedFuture(null); }
+            return pollManager.removePoll(poll.getId()).thenRun(() -> {
+                messages.send(sender, "remove.success", Map.of("code", poll.getCode()));
+                if (sender instanceof Player p) plugin.getMessageService().playSound(p, "ui.cancel");
+            });
+        }).whenComplete((v, e) -> {
+            if (e != null) messages.send(sender, "errors.storage_failed", Map.of());
+        }).exceptionally(asyncStorage.failure("remove poll"));
+    }
+
+    private void handleRepairTallies(CommandSender sender) {
+        if (!sender.hasPermission("polls.admin")) {
+            messages.send(sender, "errors.no_permission", Map.of());
+            return;
+        }
+        messages.send(sender, "repair.started", Map.of());
+        asyncStorage.repairTallies().thenAccept(polls -> {
+            if (polls == null) return;
+            messages.send(sender, "repair.success", Map.of("polls", String.valueOf(polls)));
+        }).exceptionally(asyncStorage.failure("repair tallies"));
+    }
+
+    private void handleStats(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("polls.admin")) {
+            messages.send(sender, "errors.no_permission", Map.of());
+            return;
+        }
+        MetricsRegistry metrics = plugin.getMetrics();
+        if (args.length > 0 && args[0].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            messages.send(sender, "stats.reset", Map.of());
+            return;
+        }
+        double seconds = metrics.getSecondsSinceReset();
+        messages.send(sender, "stats.header", Map.of("seconds", String.valueOf((long) seconds)));
+        for (Map.Entry<String, LatencyTimer> entry : metrics.timers().entrySet()) {
+            LatencyTimer timer = entry.getValue();
+            long count = timer.count();
+            if (count == 0) continue;
+            messages.send(sender, "stats.timer", Map.of(
+                    "name", entry.getKey(),
+                    "count", String.valueOf(count),
+                    "rate", String.format(Locale.ROOT, "%.2f", count / Math.max(1e-9, seconds)),
+                    "p50", MetricsRegistry.formatNanos(timer.percentileNanos(0.50)),
+                    "p99", MetricsRegistry.formatNanos(timer.percentileNanos(0.99)),
+                    "max", MetricsRegistry.formatNanos(timer.maxNanos()),
+                    "errors", String.valueOf(timer.errors())));
+        }
+        metrics.getCounters().forEach((name, value) ->
+                messages.send(sender, "stats.value", Map.of("name", name, "value", String.valueOf(value))));
+        metrics.getGauges().forEach((name, value) ->
+                messages.send(sender, "stats.value", Map.of("name", name, "value", String.valueOf(value))));
+    }
+
+    private void handleWatchdog(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("polls.admin")) {
+            messages.send(sender, "errors.no_permission", Map.of());
+            return;
+        }
+        WatchdogPollStorage watchdog = plugin.getWatchdog();
+        String action = args.length > 0 ? args[0].toLowerCase(Locale.ROOT) : "status";
+        switch (action) {
+            case "on" -> watchdog.setEnabled(true);
+            case "off" -> watchdog.setEnabled(false);
+            case "reset" -> watchdog.resetCounts();
+            case "threshold" -> {
+                long millis;
+                try {
+                    millis = Long.parseLong(args.length > 1 ? args[1] : "");
+                } catch (NumberFormatException e) {
+                    messages.send(sender, "errors.invalid_args", Map.of());
+                    return;
+                }
+                watchdog.setThresholdMillis(millis);
+            }
+            case "status" -> { }
+            default -> {
+                messages.send(sender, "errors.invalid_args", Map.of());
+                return;
+            }
+        }
+        messages.send(sender, watchdog.isEnabled() ? "watchdog.status_on" : "watchdog.status_off", Map.of(
+                "threshold", String.valueOf(watchdog.getThresholdMillis()),
+                "blocking", String.valueOf(watchdog.getBlockingCalls()),
+                "slow", String.valueOf(watchdog.getSlowCalls())));
+        int shown = 0;
+        for (Map.Entry<String, Long> site : watchdog.getBlockingSites().entrySet()) {
+            if (shown++ == 5) break;
+            messages.send(sender, "watchdog.site", Map.of("site", site.getKey(), "count", String.valueOf(site.getValue())));
+        }
     }
 
-    private void handleList(CommandSender sender) {
+    private void handleList(CommandSender sender, String[] args) {
         if (!sender.hasPermission("polls.list")) {
             messages.send(sender, "errors.no_permission", Map.of());
             return;
         }
-        List<Poll> polls = storage.getAllPolls();
-        messages.send(sender, "list.header", Map.of());
-        for (Poll poll : polls) {
-            String pretty = plugin.getMessageService().formatRelativeTime(poll.getClosesAtEpochSeconds());
-            Map<String, String> ph = Map.of(
-                    "code", poll.getCode(),
-                    "question", poll.getQuestion(),
-                    "pretty", pretty
-            );
-            if (poll.getStatus() == PollStatus.OPEN) {
-                messages.send(sender, "list.entry_open", ph);
-            } else {
-                messages.send(sender, "list.entry_closed", ph);
+        PollStatus status = null;
+        String filter = "all";
+        int page = 1;
+        for (String arg : args) {
+            switch (arg.toLowerCase(Locale.ROOT)) {
+                case "all" -> { status = null; filter = "all"; }
+                case "open" -> { status = PollStatus.OPEN; filter = "open"; }
+                case "closed" -> { status = PollStatus.CLOSED; filter = "closed"; }
+                default -> {
+                    try { page = Integer.parseInt(arg); } catch (NumberFormatException e) { page = 0; }
+                    if (page < 1) { messages.send(sender, "errors.invalid_args", Map.of()); return; }
+                }
             }
         }
+        String trailKey = sender instanceof Player p ? p.getUniqueId().toString() : sender.getName();
+        PollStatus listStatus = status;
+        ListTrail trail = listTrails.compute(trailKey, (k, existing) -> existing != null && existing.status == listStatus ? existing : new ListTrail(listStatus));
+        int pageSize = Math.max(1, plugin.getConfig().getInt("list.page-size", 8));
+        int pageNumber = page;
+        String filterName = filter;
+
+        int known;
+        synchronized (trail) { known = Math.min(pageNumber, trail.starts.size()); }
+        fetchPage(trail, known, pageNumber, pageSize).thenAccept(result -> {
+            if (result == null || result.getPolls().isEmpty()) {
+                messages.send(sender, "list.empty", Map.of());
+                return;
+            }
+            messages.send(sender, "list.header", Map.of());
+            for (Poll poll : result.getPolls()) {
+                String pretty = plugin.getMessageService().formatRelativeTime(poll.getClosesAtEpochSeconds());
+                Map<String, String> ph = Map.of(
+                        "code", poll.getCode(),
+                        "question", poll.getQuestion(),
+                        "pretty", pretty
+                );
+                if (poll.getStatus() == PollStatus.OPEN) {
+                    messages.send(sender, "list.entry_open", ph);
+                } else {
+                    messages.send(sender, "list.entry_closed", ph);
+                }
+            }
+            String prev = pageNumber > 1
+                    ? messages.format("list.nav_previous", Map.of("filter", filterName, "page", String.valueOf(pageNumber - 1)))
+                    : messages.format("list.nav_previous_disabled", Map.of());
+            String next = result.hasNext()
+                    ? messages.format("list.nav_next", Map.of("filter", filterName, "page", String.valueOf(pageNumber + 1)))
+                    : messages.format("list.nav_next_disabled", Map.of());
+            messages.send(sender, "list.footer", Map.of("previous", prev, "next", next, "page", String.valueOf(pageNumber)));
+        }).exceptionally(asyncStorage.failure("list polls"));
+    }
+
+    /**
+     * Walks forward from the last page whose start is known until {@code target} is reached, remembering each page
+     * start on the way. Completes with null if the listing ends before {@code target}.
+     */
+    private CompletableFuture<PollPage> fetchPage(ListTrail trail, int current, int target, int pageSize) {
+        PollCursor start;
+        synchronized (trail) { start = trail.starts.get(current - 1); }
+        return asyncStorage.listPolls(trail.status, start, pageSize).thenCompose(result -> {
+            if (result.hasNext()) {
+                synchronized (trail) {
+                    if (trail.starts.size() == current) trail.starts.add(result.getNext());
+                }
+            }
+            if (current == target) return CompletableFuture.completedFuture(result);
+            if (!result.hasNext()) return CompletableFuture.completedFuture(null);
+            return fetchPage(trail, current + 1, target, pageSize);
+        });
     }
 
     private void handleView(CommandSender sender, String[] args) {
@@ -194,11 +379,12 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             return;
         }
         if (args.length < 1) { messages.send(player, "errors.invalid_args", Map.of()); return; }
-        Poll poll = storage.findByIdOrCode(args[0]);
-        if (poll == null) { messages.send(player, "errors.invalid_poll", Map.of()); return; }
-        messages.send(player, "view.opened", Map.of());
-        plugin.getBookFactory().openVotingBook(player, poll);
-        plugin.getMessageService().playSound(player, "ui.open_voting");
+        asyncStorage.findByIdOrCode(args[0]).thenAccept(poll -> {
+            if (poll == null) { messages.send(player, "errors.invalid_poll", Map.of()); return; }
+            messages.send(player, "view.opened", Map.of());
+            plugin.getBookFactory().openVotingBook(player, poll);
+            plugin.getMessageService().playSound(player, "ui.open_voting");
+        }).exceptionally(asyncStorage.failure("view poll"));
     }
 
     private void handleVote(CommandSender sender, String[] args) {
@@ -207,12 +393,13 @@ public class PollCommand implements CommandExecutor, TabCompleter {
             return;
         }
         if (args.length < 2) { messages.send(player, "errors.invalid_args", Map.of()); return; }
-        Poll poll = storage.findByIdOrCode(args[0]);
-        if (poll == null) { messages.send(player, "errors.invalid_poll", Map.of()); plugin.getMessageService().playSound(player, "ui.error"); return; }
-        int index;
-        try { index = Integer.parseInt(args[1]); } catch (Exception e) { messages.send(player, "errors.invalid_option", Map.of()); plugin.getMessageService().playSound(player, "ui.error"); return; }
+        asyncStorage.findByIdOrCode(args[0]).thenCompose(poll -> {
+            if (poll == null) { messages.send(player, "errors.invalid_poll", Map.of()); plugin.getMessageService().playSound(player, "ui.error"); return CompletableFuture.completedFuture(null); }
+            int index;
+            try { index = Integer.parseInt(args[1]); } catch (Exception e) { messages.send(player, "errors.invalid_option", Map.of()); plugin.getMessageService().playSound(player, "ui.error"); return CompletableFuture.completedFuture(null); }
 
-        pollManager.vote(player, poll.getId(), index);
+            return pollManager.vote(player, poll, index);
+        }).exceptionally(asyncStorage.failure("record vote"));
     }
 
     private void handlePublish(CommandSender sender) {
@@ -268,24 +455,27 @@ public class PollCommand implements CommandExecutor, TabCompleter {
                 return;
             }
 
-            Poll target = storage.findByIdOrCode(idOrCode);
-            if (target == null) { messages.send(player, "errors.invalid_poll", Map.of()); return; }
-            if (target.getStatus() == PollStatus.CLOSED) {
-                messages.send(player, "errors.cannot_edit_closed", Map.of());
-                return;
-            }
-            session = sessions.startSession(player.getUniqueId());
-            session.startEditing(target.getId());
-            session.setCode(target.getCode());
-            session.setQuestion(target.getQuestion());
-            long now = java.time.Instant.now().getEpochSecond();
-            if (target.getStatus() == com.ssquadteam.polls.model.PollStatus.OPEN) {
-                long remaining = Math.max(0, target.getClosesAtEpochSeconds() - now);
-                session.setDurationSeconds(remaining);
-            }
-            java.util.List<String> opts = target.getOptions();
-            for (int i = 0; i < Math.min(6, opts.size()); i++) session.setOption(i, opts.get(i));
-            plugin.getBookFactory().openCreationBook(player, session);
+            asyncStorage.findByIdOrCode(idOrCode).thenAccept(target -> {
+                if (target == null) { messages.send(player, "errors.invalid_poll", Map.of()); return; }
+                if (target.getStatus() == PollStatus.CLOSED) {
+                    messages.send(player, "errors.cannot_edit_closed", Map.of());
+                    return;
+                }
+                plugin.getFolia().getScheduler().runAtEntity(player, task -> {
+                    PollCreationSession editing = sessions.startSession(player.getUniqueId());
+                    editing.startEditing(target.getId());
+                    editing.setCode(target.getCode());
+                    editing.setQuestion(target.getQuestion());
+                    long now = java.time.Instant.now().getEpochSecond();
+                    if (target.getStatus() == com.ssquadteam.polls.model.PollStatus.OPEN) {
+                        long remaining = Math.max(0, target.getClosesAtEpochSeconds() - now);
+                        editing.setDurationSeconds(remaining);
+                    }
+                    java.util.List<String> opts = target.getOptions();
+                    for (int i = 0; i < Math.min(6, opts.size()); i++) editing.setOption(i, opts.get(i));
+                    plugin.getBookFactory().openCreationBook(player, editing);
+                });
+            }).exceptionally(asyncStorage.failure("edit poll"));
             return;
         }
 
@@ -326,14 +516,19 @@ public class PollCommand implements CommandExecutor, TabCompleter {
     @Override
     public @Nullable List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("create", "list", "view", "vote", "close", "remove", "edit", "cancelcreation");
+            return Arrays.asList("create", "list", "view", "vote", "close", "remove", "edit", "cancelcreation", "repairtallies", "stats", "watchdog");
         }
         if (args.length == 2 && (args[0].equalsIgnoreCase("view") || args[0].equalsIgnoreCase("close") || args[0].equalsIgnoreCase("remove") || args[0].equalsIgnoreCase("edit"))) {
-            List<String> items = new ArrayList<>();
-            for (Poll p : storage.getAllPolls()) {
-                if (p.getCode() != null && !p.getCode().isBlank()) items.add(p.getCode());
-            }
-            return items;
+            return storage.completeCodes(args[1], plugin.getConfig().getInt("tab-completion.max-results", 50));
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("list")) {
+            return Arrays.asList("open", "closed", "all");
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            return List.of("reset");
+        }
+        if (args.length == 2 && args[0].equalsIgnoreCase("watchdog")) {
+            return List.of("on", "off", "threshold", "reset");
         }
         return Collections.emptyList();
     }
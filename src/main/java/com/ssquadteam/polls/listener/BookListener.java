@@ -42,6 +42,7 @@ public class BookListener implements Listener {
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         plugin.getSessionManager().markBookClosed(event.getPlayer().getUniqueId());
+        plugin.getPollManager().getVoteAdmission().forgetPlayer(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
@@ -0,0 +1,17 @@
+package com.ssquadteam.polls.metrics;
+
+import java.util.Map;
+
+/** The plugin's metrics as seen over JMX, under {@code com.ssquadteam.polls:type=Metrics}. Times are in milliseconds. */
+public interface MetricsMXBean {
+    double getSecondsSinceReset();
+    Map<String, Long> getCallCounts();
+    Map<String, Long> getErrorCounts();
+    Map<String, Double> getThroughputPerSecond();
+    Map<String, Double> getP50Millis();
+    Map<String, Double> getP99Millis();
+    Map<String, Double> getMaxMillis();
+    Map<String, Long> getCounters();
+    Map<String, Long> getGauges();
+    void reset();
+}
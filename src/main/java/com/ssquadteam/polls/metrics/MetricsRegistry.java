@@ -0,0 +1,135 @@
+package com.ssquadteam.polls.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.logging.Logger;
+
+/**
+ * Named latency timers, counters and gauges for the whole plugin. Callers look a timer up once and keep the
+ * reference, so recording never touches the registry maps. Shown by {@code /poll stats} and over JMX.
+ */
+public class MetricsRegistry implements MetricsMXBean {
+
+    private static final String OBJECT_NAME = "com.ssquadteam.polls:type=Metrics";
+
+    private final Map<String, LatencyTimer> timers = new ConcurrentSkipListMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private volatile long resetAt = System.nanoTime();
+    private ObjectName registeredAs;
+
+    public LatencyTimer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new LatencyTimer());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /** Registers a value that is read only when metrics are shown, e.g. a queue length. */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    public Map<String, LatencyTimer> timers() { return timers; }
+
+    @Override
+    public double getSecondsSinceReset() {
+        return (System.nanoTime() - resetAt) / 1_000_000_000.0;
+    }
+
+    @Override
+    public Map<String, Long> getCallCounts() { return perTimer(LatencyTimer::count); }
+
+    @Override
+    public Map<String, Long> getErrorCounts() { return perTimer(LatencyTimer::errors); }
+
+    @Override
+    public Map<String, Double> getThroughputPerSecond() {
+        double seconds = Math.max(1e-9, getSecondsSinceReset());
+        return perTimerDouble(t -> t.count() / seconds);
+    }
+
+    @Override
+    public Map<String, Double> getP50Millis() { return perTimerDouble(t -> t.percentileNanos(0.50) / 1_000_000.0); }
+
+    @Override
+    public Map<String, Double> getP99Millis() { return perTimerDouble(t -> t.percentileNanos(0.99) / 1_000_000.0); }
+
+    @Override
+    public Map<String, Double> getMaxMillis() { return perTimerDouble(t -> t.maxNanos() / 1_000_000.0); }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    @Override
+    public void reset() {
+        timers.values().forEach(LatencyTimer::reset);
+        counters.values().forEach(LongAdder::reset);
+        resetAt = System.nanoTime();
+    }
+
+    public void registerMBean(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // Left behind by a previous instance after a plugin reload
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+            registeredAs = name;
+        } catch (InstanceAlreadyExistsException e) {
+            logger.warning("Metrics MBean is already registered");
+        } catch (JMException e) {
+            logger.warning("Failed to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    public void unregisterMBean() {
+        if (registeredAs == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        } catch (JMException ignored) {
+            // Already gone
+        }
+        registeredAs = null;
+    }
+
+    /** Formats a latency for display: microseconds below a millisecond, milliseconds above. */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000_000) return String.format("%.0fµs", nanos / 1_000.0);
+        return String.format("%.2fms", nanos / 1_000_000.0);
+    }
+
+    private Map<String, Long> perTimer(ToLongFunction<LatencyTimer> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        timers.forEach((name, timer) -> values.put(name, value.applyAsLong(timer)));
+        return values;
+    }
+
+    private Map<String, Double> perTimerDouble(ToDoubleFunction<LatencyTimer> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        timers.forEach((name, timer) -> values.put(name, value.applyAsDouble(timer)));
+        return values;
+    }
+}
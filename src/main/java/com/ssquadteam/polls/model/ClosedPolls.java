@@ -0,0 +1,19 @@
+package com.ssquadteam.polls.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class ClosedPolls {
+    private final List<Poll> polls; // the ones that were still open, now closed
+    private final Map<UUID, int[]> counts; // final vote counts per closed poll
+
+    public ClosedPolls(List<Poll> polls, Map<UUID, int[]> counts) {
+        this.polls = polls;
+        this.counts = counts;
+    }
+
+    public List<Poll> getPolls() { return polls; }
+    public Map<UUID, int[]> getCounts() { return counts; }
+    public boolean isEmpty() { return polls.isEmpty(); }
+}
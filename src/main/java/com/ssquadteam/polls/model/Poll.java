@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.UUID;
 
 public class Poll {
+    public static final int MAX_OPTIONS = 6;
+
     private UUID id;
     private String code;
     private String question; // MiniMessage
@@ -23,6 +25,13 @@ public class Poll {
         this.status = status;
     }
 
+    /** An independent copy, so a cached poll can't be changed through the instance a caller edits. */
+    public Poll copy() {
+        Poll copy = new Poll(id, question, options, createdAtEpochSeconds, closesAtEpochSeconds, status);
+        copy.code = code;
+        return copy;
+    }
+
     public UUID getId() { return id; }
     public String getCode() { return code; }
     public void setCode(String code) { this.code = code; }
@@ -0,0 +1,40 @@
+package com.ssquadteam.polls.model;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Position in the poll listing, which is ordered newest first by creation time and then by id.
+ * A page starts right after its cursor.
+ */
+public class PollCursor implements Comparable<PollCursor> {
+    private static final Comparator<PollCursor> ORDER = Comparator
+            .comparingLong(PollCursor::getCreatedAtEpochSeconds).reversed()
+            .thenComparing(PollCursor::getPollId, Comparator.reverseOrder());
+
+    private final long createdAtEpochSeconds;
+    private final UUID pollId;
+
+    public PollCursor(long createdAtEpochSeconds, UUID pollId) {
+        this.createdAtEpochSeconds = createdAtEpochSeconds;
+        this.pollId = pollId;
+    }
+
+    public static PollCursor of(Poll poll) {
+        return new PollCursor(poll.getCreatedAtEpochSeconds(), poll.getId());
+    }
+
+    public long getCreatedAtEpochSeconds() { return createdAtEpochSeconds; }
+    public UUID getPollId() { return pollId; }
+
+    @Override
+    public int compareTo(PollCursor other) { return ORDER.compare(this, other); }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PollCursor other && createdAtEpochSeconds == other.createdAtEpochSeconds && pollId.equals(other.pollId);
+    }
+
+    @Override
+    public int hashCode() { return Long.hashCode(createdAtEpochSeconds) * 31 + pollId.hashCode(); }
+}
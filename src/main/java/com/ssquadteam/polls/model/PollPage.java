@@ -0,0 +1,17 @@
+package com.ssquadteam.polls.model;
+
+import java.util.List;
+
+public class PollPage {
+    private final List<Poll> polls;
+    private final PollCursor next; // null on the last page
+
+    public PollPage(List<Poll> polls, PollCursor next) {
+        this.polls = polls;
+        this.next = next;
+    }
+
+    public List<Poll> getPolls() { return polls; }
+    public PollCursor getNext() { return next; }
+    public boolean hasNext() { return next != null; }
+}
@@ -1,12 +1,14 @@
 package com.ssquadteam.polls.service;
 
 import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.metrics.LatencyTimer;
 import com.ssquadteam.polls.model.Poll;
 import com.ssquadteam.polls.model.PollStatus;
-import com.ssquadteam.polls.storage.PollStorage;
+import com.ssquadteam.polls.storage.AsyncPollStorage;
 import com.ssquadteam.polls.service.session.PollCreationSession;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
@@ -17,265 +19,319 @@ import org.bukkit.Material;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
+import java.util.function.UnaryOperator;
 
 public class BookFactory {
 
+    private static final Component NEWLINE = Component.text("\n");
+    private static final Component SPACE = Component.text(" ");
+    private static final String VALUE = "{value}";
+    private static final int OPTIONS_PER_PAGE = 3;
+
     private final PollsPlugin plugin;
     private final MiniMessage mm = MiniMessage.miniMessage();
+    private volatile CreationLayout creation;
+    private volatile VotingLayout voting;
+    private final LatencyTimer creationTimer;
+    private final LatencyTimer votingTimer;
 
     public BookFactory(PollsPlugin plugin) {
         this.plugin = plugin;
+        this.creationTimer = plugin.getMetrics().timer("books.creation");
+        this.votingTimer = plugin.getMetrics().timer("books.voting");
+        reload();
     }
 
     public void openCreationBook(Player player, PollCreationSession session) {
-        ItemStack book = new ItemStack(Material.WRITTEN_BOOK);
-        BookMeta meta = (BookMeta) book.getItemMeta();
+        if (!session.isEditingExisting()) {
+            showCreationBook(player, session, false);
+            return;
+        }
+        AsyncPollStorage storage = plugin.getPollManager().getAsyncStorage();
+        storage.getPoll(session.getEditingPollId())
+                .thenAccept(poll -> plugin.getFolia().getScheduler().runAtEntity(player,
+                        task -> showCreationBook(player, session, poll != null && poll.getStatus() == PollStatus.CLOSED)))
+                .exceptionally(storage.failure("open creation book"));
+    }
 
-        String title = plugin.getConfig().getString("books.creation.title", "Poll Creator");
-        String author = plugin.getConfig().getString("books.creation.author", "Polls");
-        String header = plugin.getConfig().getString("books.creation.header", "Create a new poll\n");
-        String editCode = plugin.getConfig().getString("books.creation.editCodeButton", "[Edit ID]");
-        String editQ = plugin.getConfig().getString("books.creation.editQuestionButton", "[Edit Question]");
-        String editD = plugin.getConfig().getString("books.creation.editDurationButton", "[Edit Duration]");
-        String publish = plugin.getConfig().getString("books.creation.publishButton", "[Publish Poll]");
-        String cancel = plugin.getConfig().getString("books.creation.cancelButton", "[Cancel]");
-        String optionFmt = plugin.getConfig().getString("books.creation.optionButtonFormat", "[Set Option {index}]");
-        String optionUnset = plugin.getConfig().getString("books.creation.optionUnset", "[Not Set]");
-        String pageNote = plugin.getConfig().getString("books.creation.pageNote", "Set up to 6 options.");
-        String nextPageNote = plugin.getConfig().getString("books.creation.nextPageNote", "Turn to next page to continue →");
-        String indent = plugin.getConfig().getString("books.creation.indent", "  ");
-        String labelId = plugin.getConfig().getString("books.creation.labels.id", "<black>ID:</black>");
-        String labelQ = plugin.getConfig().getString("books.creation.labels.question", "<black>Question:</black>");
-        String labelD = plugin.getConfig().getString("books.creation.labels.duration", "<black>Duration:</black>");
-        String hoverCode = plugin.getConfig().getString("books.creation.hover.code", "Click to set ID");
-        String hoverQuestion = plugin.getConfig().getString("books.creation.hover.question", "Click to set question");
-        String hoverDuration = plugin.getConfig().getString("books.creation.hover.duration", "Click to set duration");
-        String hoverOption = plugin.getConfig().getString("books.creation.hover.option", "Click to set option {index}");
-        String hoverPublish = plugin.getConfig().getString("books.creation.hover.publish", "Click to publish poll");
-        String hoverCancel = plugin.getConfig().getString("books.creation.hover.cancel", "Click to cancel");
+    /** Re-reads the book layouts from config and parses their static fragments. */
+    public void reload() {
+        ConfigurationSection config = plugin.getConfig();
+        this.creation = CreationLayout.load(config, mm);
+        this.voting = VotingLayout.load(config, mm);
+    }
 
-        List<Component> pages = new ArrayList<>();
+    private void showCreationBook(Player player, PollCreationSession session, boolean editingClosed) {
+        long start = System.nanoTime();
+        CreationLayout layout = creation;
+        MessageService messages = plugin.getMessageService();
+        ItemStack book = new ItemStack(Material.WRITTEN_BOOK);
+        BookMeta meta = (BookMeta) book.getItemMeta();
 
-        String code = session.getCode() == null ? optionUnset : plugin.getMessageService().sanitizeForMiniMessage(session.getCode());
-        String question = session.getQuestion() == null ? optionUnset : plugin.getMessageService().sanitizeForMiniMessage(session.getQuestion());
-        String duration = session.getDurationSeconds() == null ? optionUnset : plugin.getMessageService().formatRelativeTime(session.previewClosesAt());
-
-        Component page1 = mm.deserialize(header)
-                .append(newline())
-                .append(mm.deserialize(indent))
-                .append(clickable(label(labelId, code), "/poll edit code", hoverCode))
-                .append(newline())
-                .append(mm.deserialize(indent))
-                .append(clickable(label(labelQ, question), "/poll edit question", hoverQuestion))
-                .append(newline())
-                .append(mm.deserialize(indent))
-                .append(clickable(label(labelD, duration), "/poll edit duration", hoverDuration))
-                .append(newline())
-                .append(newline())
-                .append(mm.deserialize(pageNote))
-                .append(newline());
+        String code = session.getCode() == null ? null : messages.sanitizeForMiniMessage(session.getCode());
+        String question = session.getQuestion() == null ? null : messages.sanitizeForMiniMessage(session.getQuestion());
+        String duration = session.getDurationSeconds() == null ? null : messages.formatRelativeTime(session.previewClosesAt());
 
+        List<Component> page1 = new ArrayList<>(layout.header().children());
+        append(page1, NEWLINE,
+                layout.indent(), layout.code().render(code), NEWLINE,
+                layout.indent(), layout.question().render(question), NEWLINE,
+                layout.indent(), layout.duration().render(duration), NEWLINE,
+                NEWLINE, layout.pageNote(), NEWLINE);
         // options 1-3 on page 1
         for (int i = 0; i < 3; i++) {
-            String label = optionFmt.replace("{index}", String.valueOf(i + 1));
-            String value = session.getOption(i) == null ? optionUnset : session.getOption(i);
-            String hover = hoverOption.replace("{index}", String.valueOf(i + 1));
-            page1 = page1.append(mm.deserialize(indent))
-                    .append(clickable(label + " "+ value, "/poll edit option " + (i + 1), hover))
-                    .append(newline());
+            append(page1, layout.indent(), layout.options()[i].render(session.getOption(i)), NEWLINE);
         }
+        // Next page info at end of page 1
+        append(page1, NEWLINE, layout.nextPageNote());
 
         // page 2
-        Component page2 = mm.deserialize(header).append(newline());
+        List<Component> page2 = new ArrayList<>(layout.header().children());
+        append(page2, NEWLINE);
         for (int i = 3; i < 6; i++) {
-            String label = optionFmt.replace("{index}", String.valueOf(i + 1));
-            String value = session.getOption(i) == null ? optionUnset : session.getOption(i);
-            String hover = hoverOption.replace("{index}", String.valueOf(i + 1));
-            page2 = page2.append(mm.deserialize(indent))
-                    .append(clickable(label + " " + value, "/poll edit option " + (i + 1), hover))
-                    .append(newline());
+            append(page2, layout.indent(), layout.options()[i].render(session.getOption(i)), NEWLINE);
         }
         // If editing a closed poll, show a disabled note instead of publish button
-        boolean editingClosed = session.isEditingExisting() && plugin.getPollManager().getStorage().getPoll(session.getEditingPollId()).getStatus() == PollStatus.CLOSED;
         if (editingClosed) {
-            page2 = page2.append(newline())
-                    .append(mm.deserialize(indent))
-                    .append(mm.deserialize("<red>Closed polls cannot be edited.</red>"))
-                    .append(newline())
-                    .append(mm.deserialize(indent))
-                    .append(clickable(cancel, "/poll cancel", hoverCancel));
+            append(page2, NEWLINE, layout.indent(), layout.closedNote(), NEWLINE, layout.indent(), layout.cancel());
         } else {
-            page2 = page2.append(newline())
-                    .append(mm.deserialize(indent))
-                    .append(clickable(publish, "/poll publish", hoverPublish))
-                    .append(Component.text(" "))
-                    .append(clickable(cancel, "/poll cancel", hoverCancel));
+            append(page2, NEWLINE, layout.indent(), layout.publish(), SPACE, layout.cancel());
         }
 
-        // Next page info at end of page 1
-        page1 = page1.append(newline()).append(mm.deserialize(indent + nextPageNote));
-
-        meta.title(Component.text(mm.stripTags(title)));
-        meta.author(Component.text(mm.stripTags(author)));
-        meta.addPages(page1, page2);
+        meta.title(layout.title());
+        meta.author(layout.author());
+        meta.addPages(layout.header().children(page1), layout.header().children(page2));
         book.setItemMeta(meta);
+        creationTimer.recordSince(start);
 
         open(player, book);
         plugin.getSessionManager().markBookOpened(player.getUniqueId());
-        plugin.getMessageService().playSound(player, "ui.open_creation");
+        messages.playSound(player, "ui.open_creation");
     }
 
     public void openVotingBook(Player player, Poll poll) {
+        AsyncPollStorage storage = plugin.getPollManager().getAsyncStorage();
+        storage.getPlayerVote(poll.getId(), player.getUniqueId())
+                .thenCombine(storage.getVoteCounts(poll.getId()), (playerVote, counts) -> buildVotingBook(poll, playerVote, counts))
+                .thenAccept(book -> open(player, book))
+                .exceptionally(storage.failure("open voting book"));
+    }
+
+    private ItemStack buildVotingBook(Poll poll, Integer playerVote, int[] counts) {
+        long start = System.nanoTime();
+        VotingLayout layout = voting;
+        MessageService messages = plugin.getMessageService();
         ItemStack book = new ItemStack(Material.WRITTEN_BOOK);
         BookMeta meta = (BookMeta) book.getItemMeta();
+        meta.title(layout.title());
+        meta.author(layout.author());
+        meta.addPages(votingPages(layout, poll, playerVote, counts,
+                messages.formatAbsoluteTime(poll.getClosesAtEpochSeconds()), messages::sanitizeForMiniMessage));
+        book.setItemMeta(meta);
+        votingTimer.recordSince(start);
+        return book;
+    }
 
-        String title = plugin.getConfig().getString("books.voting.title", "Poll");
-        String author = plugin.getConfig().getString("books.voting.author", "Polls");
-        String headerFmt = plugin.getConfig().getString("books.voting.headerFormat", null);
-        String qLabel = plugin.getConfig().getString("books.voting.labels.question", "<gray>Q:</gray>");
-        String cLabel = plugin.getConfig().getString("books.voting.labels.closes", "<gray>Closes:</gray>");
-        String optionLineFmt = plugin.getConfig().getString("books.voting.optionLineFormat", "{icon} {option} (click to vote)");
-        String alreadyVotedLineFmt = plugin.getConfig().getString("books.voting.alreadyVotedLineFormat", "{icon} {option} (you voted)");
-        String rowFormat = plugin.getConfig().getString("books.voting.rows.rowFormat", "%icon% <dark_gray>%question%</dark_gray> <gray>(%state%)</gray>");
-        String nextPageHint = plugin.getConfig().getString("books.voting.nextPageNote", "<dark_gray>Turn page to continue →</dark_gray>");
-        String closedMessage = plugin.getConfig().getString("books.voting.closedMessage", "<red>Poll has closed</red>");
-        String indent = plugin.getConfig().getString("books.voting.indent", "  ");
-        int maxQuestionLength = plugin.getConfig().getInt("books.voting.maxQuestionLength", 100);
-        int maxOptionLength = plugin.getConfig().getInt("books.voting.maxOptionLength", 50);
-        String stClick = plugin.getConfig().getString("books.voting.state.click", "<gray>Click to vote for %number%</gray>");
-        String stVoted = plugin.getConfig().getString("books.voting.state.voted", "<yellow>You voted for %number%</yellow>");
-        String stMajority = plugin.getConfig().getString("books.voting.state.majority", "<green>%number% has most votes</green>");
-        String stClickClosed = plugin.getConfig().getString("books.voting.state.click_closed", "<gray>Voting closed</gray>");
-        String stVotedClosed = plugin.getConfig().getString("books.voting.state.voted_closed", "<yellow>You voted for %number%</yellow>");
-        String stMajorityClosed = plugin.getConfig().getString("books.voting.state.majority_closed", "<green>%number% had highest votes</green>");
-        String hoverOption = plugin.getConfig().getString("books.voting.hover.option", "Pick this option.");
-        String hoverAlready = plugin.getConfig().getString("books.voting.hover.alreadyVotedOption", "You already voted.");
-        String hoverQuestion = plugin.getConfig().getString("books.voting.hover.question", "Poll question");
-        List<String> iconsList = plugin.getConfig().getStringList("icons.default");
-        if (iconsList == null || iconsList.isEmpty()) {
-            iconsList = List.of("1.", "2.", "3.", "4.", "5.", "6.");
-        }
-
-        Component page;
-        String truncatedQuestion = truncateText(poll.getQuestion(), maxQuestionLength);
-        if (headerFmt != null) {
-            String header = plugin.getMessageService().apply(Map.of(
-                    "question", truncatedQuestion,
-                    "closes_at", plugin.getMessageService().formatAbsoluteTime(poll.getClosesAtEpochSeconds())
-            ), headerFmt);
-            page = mm.deserialize(header).append(newline());
+    /**
+     * The voting book's pages, everything an open builds besides the item itself. Package-private for the JMH
+     * benchmark, which has no server to make items on.
+     */
+    static Component[] votingPages(VotingLayout layout, Poll poll, Integer playerVote, int[] counts, String closesAt,
+                                   UnaryOperator<String> sanitize) {
+        Component first;
+        List<Component> firstChildren;
+        String truncatedQuestion = truncateText(poll.getQuestion(), layout.maxQuestionLength());
+        if (layout.header() != null) {
+            first = layout.header().render(sanitize.apply(truncatedQuestion), sanitize.apply(closesAt));
+            firstChildren = new ArrayList<>(first.children());
+            append(firstChildren, NEWLINE);
         } else {
-            page = mm.deserialize(qLabel + " ")
-                    .append(withHover(mm.deserialize(truncatedQuestion), hoverQuestion))
-                    .append(newline())
-                    .append(mm.deserialize(cLabel + " "))
-                    .append(mm.deserialize(plugin.getMessageService().formatAbsoluteTime(poll.getClosesAtEpochSeconds())))
-                    .append(newline());
+            first = layout.questionLabel();
+            firstChildren = new ArrayList<>(first.children());
+            append(firstChildren, withHover(layout.text().render(truncatedQuestion), layout.questionHover()), NEWLINE,
+                    layout.closesLabel(), layout.text().render(closesAt), NEWLINE);
         }
 
-        boolean alreadyVoted;
-        try {
-            alreadyVoted = plugin.getPollManager().getStorage().hasVoted(poll.getId(), player.getUniqueId());
-        } catch (Exception e) {
-            alreadyVoted = false;
-        }
-        Integer playerVote = plugin.getPollManager().getStorage().getPlayerVote(poll.getId(), player.getUniqueId());
-        Map<Integer, Integer> tally = plugin.getPollManager().getStorage().getVoteTally(poll.getId());
         int majorityIndex = -1; int max = -1;
-        for (Map.Entry<Integer, Integer> en : tally.entrySet()) {
-            if (en.getValue() > max) { max = en.getValue(); majorityIndex = en.getKey(); }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && counts[i] > max) { max = counts[i]; majorityIndex = i; }
         }
 
+        boolean canVote = playerVote == null && poll.isOpen();
+        HoverEvent<Component> rowHover = canVote ? layout.optionHover() : layout.votedHover();
+
         // Build pages with 3 options per page maximum
-        List<String> icons2 = iconsList;
         List<Component> pages = new ArrayList<>();
         int totalOptions = poll.getOptions().size();
-        int optionsPerPage = 3;
-        int totalPages = (int) Math.ceil((double) totalOptions / optionsPerPage);
+        int totalPages = (totalOptions + OPTIONS_PER_PAGE - 1) / OPTIONS_PER_PAGE;
 
         for (int pageNum = 0; pageNum < totalPages; pageNum++) {
-            Component currentPage = page;
-            if (pageNum > 0) {
-                currentPage = Component.empty();
-            }
+            Component root = pageNum == 0 ? first : Component.empty();
+            List<Component> children = pageNum == 0 ? firstChildren : new ArrayList<>();
 
-            int startIndex = pageNum * optionsPerPage;
-            int endIndex = Math.min(startIndex + optionsPerPage, totalOptions);
+            int startIndex = pageNum * OPTIONS_PER_PAGE;
+            int endIndex = Math.min(startIndex + OPTIONS_PER_PAGE, totalOptions);
 
             for (int i = startIndex; i < endIndex; i++) {
-                String icon = i < icons2.size() ? icons2.get(i) : String.valueOf(i + 1) + ".";
-                String state;
-                if (poll.isOpen()) {
-                    if (majorityIndex == i) state = stMajority.replace("%number%", String.valueOf(i + 1));
-                    else if (playerVote != null && playerVote == i) state = stVoted.replace("%number%", String.valueOf(i + 1));
-                    else state = stClick.replace("%number%", String.valueOf(i + 1));
-                } else {
-                    if (majorityIndex == i) state = stMajorityClosed.replace("%number%", String.valueOf(i + 1));
-                    else if (playerVote != null && playerVote == i) state = stVotedClosed.replace("%number%", String.valueOf(i + 1));
-                    else state = stClickClosed.replace("%number%", String.valueOf(i + 1));
-                }
-                String truncatedOption = truncateText(poll.getOptions().get(i), maxOptionLength);
-                String line = rowFormat
-                        .replace("%icon%", icon)
-                        .replace("%question%", truncatedOption)
-                        .replace("%state%", state);
-                Component comp = withHover(mm.deserialize(line), (playerVote != null || !poll.isOpen()) ? hoverAlready : hoverOption);
-                if (playerVote == null && poll.isOpen()) {
+                int state = (poll.isOpen() ? 0 : 3)
+                        + (majorityIndex == i ? 2 : playerVote != null && playerVote == i ? 1 : 0);
+                String truncatedOption = truncateText(poll.getOptions().get(i), layout.maxOptionLength());
+                Component comp = withHover(layout.rows()[i][state].render(truncatedOption), rowHover);
+                if (canVote) {
                     comp = comp.clickEvent(ClickEvent.runCommand("/poll vote " + poll.getCode() + " " + i));
                 }
-                currentPage = currentPage.append(mm.deserialize(indent)).append(comp).append(newline());
+                append(children, layout.indent(), comp, NEWLINE);
             }
 
             if (pageNum < totalPages - 1) {
-                currentPage = currentPage.append(newline()).append(mm.deserialize(indent + nextPageHint));
+                append(children, NEWLINE, layout.nextPageNote());
             }
 
             if (!poll.isOpen()) {
-                currentPage = currentPage.append(newline()).append(mm.deserialize(indent + closedMessage));
+                append(children, NEWLINE, layout.closedMessage());
             }
 
-            pages.add(currentPage);
+            pages.add(root.children(children));
         }
-
-        meta.title(Component.text(mm.stripTags(title)));
-        meta.author(Component.text(mm.stripTags(author)));
-        meta.addPages(pages.toArray(new Component[0]));
-        book.setItemMeta(meta);
-
-        open(player, book);
+        return pages.toArray(new Component[0]);
     }
 
-    private Component clickable(String mmText, String command, String hover) {
-        Component base = mm.deserialize(mmText);
-        base = base.clickEvent(ClickEvent.runCommand(command));
-        if (hover != null && !hover.isBlank()) {
-            base = base.hoverEvent(net.kyori.adventure.text.event.HoverEvent.showText(mm.deserialize(hover)));
+    /** Adds {@code parts} the way {@link Component#append} would, without copying the child list on every call. */
+    private static void append(List<Component> children, Component... parts) {
+        for (Component part : parts) {
+            if (part != Component.empty()) children.add(part);
         }
-        return base;
-    }
-
-    private Component newline() {
-        return Component.text("\n");
     }
 
     private void open(Player player, ItemStack book) {
         plugin.getFolia().getScheduler().runAtEntity(player, task -> player.openBook(book));
     }
 
-    private String truncateText(String text, int maxLength) {
+    private static String truncateText(String text, int maxLength) {
         if (text == null) return "";
         if (text.length() <= maxLength) return text;
         return text.substring(0, maxLength - 3) + "...";
     }
 
-    private Component withHover(Component component, String hover) {
-        if (hover == null || hover.isBlank()) return component;
-        return component.hoverEvent(net.kyori.adventure.text.event.HoverEvent.showText(mm.deserialize(hover)));
+    private static Component withHover(Component component, HoverEvent<Component> hover) {
+        return hover == null ? component : component.hoverEvent(hover);
+    }
+
+    private static HoverEvent<Component> hover(MiniMessage mm, String hover) {
+        if (hover == null || hover.isBlank()) return null;
+        return HoverEvent.showText(mm.deserialize(hover));
+    }
+
+    private static Component button(Component base, String command, HoverEvent<Component> hover) {
+        return withHover(base.clickEvent(ClickEvent.runCommand(command)), hover);
+    }
+
+    private static Component bookText(MiniMessage mm, String mmText) {
+        return Component.text(mm.stripTags(mmText));
+    }
+
+    /** A clickable {@code label value} line of the creation book; only the value is rendered per open. */
+    private record Field(ComponentTemplate template, Component unset, String command, HoverEvent<Component> hover) {
+
+        static Field of(MiniMessage mm, String label, String unset, String command, String hover) {
+            return new Field(ComponentTemplate.compile(mm, label + " " + VALUE, VALUE),
+                    button(mm.deserialize(label + " " + unset), command, hover(mm, hover)), command, hover(mm, hover));
+        }
+
+        Component render(String value) {
+            return value == null ? unset : button(template.render(value), command, hover);
+        }
+    }
+
+    private record CreationLayout(Component title, Component author, Component header, Component indent,
+                                  Component pageNote, Component nextPageNote, Component closedNote,
+                                  Component publish, Component cancel,
+                                  Field code, Field question, Field duration, Field[] options) {
+
+        static CreationLayout load(ConfigurationSection config, MiniMessage mm) {
+            String optionFmt = config.getString("books.creation.optionButtonFormat", "[Set Option {index}]");
+            String optionUnset = config.getString("books.creation.optionUnset", "[Not Set]");
+            String indent = config.getString("books.creation.indent", "  ");
+            String hoverOption = config.getString("books.creation.hover.option", "Click to set option {index}");
+            Field[] options = new Field[Poll.MAX_OPTIONS];
+            for (int i = 0; i < options.length; i++) {
+                String index = String.valueOf(i + 1);
+                options[i] = Field.of(mm, optionFmt.replace("{index}", index), optionUnset,
+                        "/poll edit option " + index, hoverOption.replace("{index}", index));
+            }
+            return new CreationLayout(
+                    bookText(mm, config.getString("books.creation.title", "Poll Creator")),
+                    bookText(mm, config.getString("books.creation.author", "Polls")),
+                    mm.deserialize(config.getString("books.creation.header", "Create a new poll\n")),
+                    mm.deserialize(indent),
+                    mm.deserialize(config.getString("books.creation.pageNote", "Set up to 6 options.")),
+                    mm.deserialize(indent + config.getString("books.creation.nextPageNote", "Turn to next page to continue →")),
+                    mm.deserialize("<red>Closed polls cannot be edited.</red>"),
+                    button(mm.deserialize(config.getString("books.creation.publishButton", "[Publish Poll]")), "/poll publish",
+                            hover(mm, config.getString("books.creation.hover.publish", "Click to publish poll"))),
+                    button(mm.deserialize(config.getString("books.creation.cancelButton", "[Cancel]")), "/poll cancel",
+                            hover(mm, config.getString("books.creation.hover.cancel", "Click to cancel"))),
+                    Field.of(mm, config.getString("books.creation.labels.id", "<black>ID:</black>"), optionUnset,
+                            "/poll edit code", config.getString("books.creation.hover.code", "Click to set ID")),
+                    Field.of(mm, config.getString("books.creation.labels.question", "<black>Question:</black>"), optionUnset,
+                            "/poll edit question", config.getString("books.creation.hover.question", "Click to set question")),
+                    Field.of(mm, config.getString("books.creation.labels.duration", "<black>Duration:</black>"), optionUnset,
+                            "/poll edit duration", config.getString("books.creation.hover.duration", "Click to set duration")),
+                    options);
+        }
     }
 
-    private String label(String labelMm, String valueMm) {
-        return labelMm + " " + valueMm;
+    record VotingLayout(Component title, Component author, ComponentTemplate header,
+                                Component questionLabel, Component closesLabel, ComponentTemplate text,
+                                HoverEvent<Component> questionHover, Component indent, Component nextPageNote,
+                                Component closedMessage, int maxQuestionLength, int maxOptionLength,
+                                ComponentTemplate[][] rows, HoverEvent<Component> optionHover,
+                                HoverEvent<Component> votedHover) {
+
+        static VotingLayout load(ConfigurationSection config, MiniMessage mm) {
+            String headerFmt = config.getString("books.voting.headerFormat", null);
+            String indent = config.getString("books.voting.indent", "  ");
+            String rowFormat = config.getString("books.voting.rows.rowFormat", "%icon% <dark_gray>%question%</dark_gray> <gray>(%state%)</gray>");
+            // Open states first, then closed: click, voted, majority
+            String[] states = {
+                    config.getString("books.voting.state.click", "<gray>Click to vote for %number%</gray>"),
+                    config.getString("books.voting.state.voted", "<yellow>You voted for %number%</yellow>"),
+                    config.getString("books.voting.state.majority", "<green>%number% has most votes</green>"),
+                    config.getString("books.voting.state.click_closed", "<gray>Voting closed</gray>"),
+                    config.getString("books.voting.state.voted_closed", "<yellow>You voted for %number%</yellow>"),
+                    config.getString("books.voting.state.majority_closed", "<green>%number% had highest votes</green>")
+            };
+            List<String> icons = config.getStringList("icons.default");
+            if (icons.isEmpty()) {
+                icons = List.of("1.", "2.", "3.", "4.", "5.", "6.");
+            }
+            // Icon and state only depend on the option index, so each row is parsed once with just the option text left open
+            ComponentTemplate[][] rows = new ComponentTemplate[Poll.MAX_OPTIONS][states.length];
+            for (int i = 0; i < rows.length; i++) {
+                String number = String.valueOf(i + 1);
+                String icon = i < icons.size() ? icons.get(i) : number + ".";
+                for (int s = 0; s < states.length; s++) {
+                    String row = rowFormat.replace("%icon%", icon).replace("%state%", states[s].replace("%number%", number));
+                    rows[i][s] = ComponentTemplate.compile(mm, row, "%question%");
+                }
+            }
+            return new VotingLayout(
+                    bookText(mm, config.getString("books.voting.title", "Poll")),
+                    bookText(mm, config.getString("books.voting.author", "Polls")),
+                    headerFmt == null ? null : ComponentTemplate.compile(mm, headerFmt, "{question}", "{closes_at}"),
+                    mm.deserialize(config.getString("books.voting.labels.question", "<gray>Q:</gray>") + " "),
+                    mm.deserialize(config.getString("books.voting.labels.closes", "<gray>Closes:</gray>") + " "),
+                    ComponentTemplate.compile(mm, VALUE, VALUE),
+                    hover(mm, config.getString("books.voting.hover.question", "Poll question")),
+                    mm.deserialize(indent),
+                    mm.deserialize(indent + config.getString("books.voting.nextPageNote", "<dark_gray>Turn page to continue →</dark_gray>")),
+                    mm.deserialize(indent + config.getString("books.voting.closedMessage", "<red>Poll has closed</red>")),
+                    config.getInt("books.voting.maxQuestionLength", 100),
+                    config.getInt("books.voting.maxOptionLength", 50),
+                    rows,
+                    hover(mm, config.getString("books.voting.hover.option", "Pick this option.")),
+                    hover(mm, config.getString("books.voting.hover.alreadyVotedOption", "You already voted.")));
+        }
     }
 }
@@ -0,0 +1,89 @@
+package com.ssquadteam.polls.service;
+
+import com.ssquadteam.polls.PollsPlugin;
+import com.tcoded.folialib.impl.PlatformScheduler;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Delivers a broadcast with one scheduler task per group of nearby players instead of a message task and a sound task
+ * for every player. On Folia players are grouped by the region section they stand in; elsewhere everyone is on the
+ * main thread and forms one group. Groups past the per-tick player budget are pushed to later ticks.
+ */
+public class BroadcastDispatcher {
+
+    // Folia builds regions out of 16x16 chunk sections by default (block -> chunk -> section)
+    private static final int SECTION_SHIFT = 4 + 4;
+
+    private final PollsPlugin plugin;
+
+    public BroadcastDispatcher(PollsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public void dispatch(Iterable<? extends Player> recipients, Component message, MessageService.SoundCue sound) {
+        int budget = Math.max(1, plugin.getConfig().getInt("broadcast.players-per-tick", 500));
+        PlatformScheduler scheduler = plugin.getFolia().getScheduler();
+        int tick = 0;
+        int used = 0;
+        for (List<Player> group : group(recipients)) {
+            for (int from = 0; from < group.size(); from += budget) {
+                List<Player> slice = group.subList(from, Math.min(from + budget, group.size()));
+                if (used > 0 && used + slice.size() > budget) {
+                    tick++;
+                    used = 0;
+                }
+                used += slice.size();
+                Location anchor = slice.get(0).getLocation();
+                if (tick == 0) {
+                    scheduler.runAtLocation(anchor, task -> deliver(slice, message, sound));
+                } else {
+                    scheduler.runAtLocationLater(anchor, task -> deliver(slice, message, sound), tick);
+                }
+            }
+        }
+    }
+
+    private List<List<Player>> group(Iterable<? extends Player> recipients) {
+        if (!plugin.getFolia().isFolia()) {
+            List<Player> everyone = new ArrayList<>();
+            for (Player player : recipients) everyone.add(player);
+            return everyone.isEmpty() ? List.of() : List.of(everyone);
+        }
+        Map<SectionKey, List<Player>> sections = new LinkedHashMap<>();
+        for (Player player : recipients) {
+            Location location = player.getLocation();
+            SectionKey key = new SectionKey(location.getWorld().getUID(),
+                    location.getBlockX() >> SECTION_SHIFT, location.getBlockZ() >> SECTION_SHIFT);
+            sections.computeIfAbsent(key, k -> new ArrayList<>()).add(player);
+        }
+        return new ArrayList<>(sections.values());
+    }
+
+    private void deliver(List<Player> players, Component message, MessageService.SoundCue sound) {
+        PlatformScheduler scheduler = plugin.getFolia().getScheduler();
+        for (Player player : players) {
+            if (!player.isOnline()) continue;
+            // The player may have walked into another region since they were grouped
+            if (!scheduler.isOwnedByCurrentRegion(player)) {
+                scheduler.runAtEntity(player, task -> deliver(player, message, sound));
+                continue;
+            }
+            deliver(player, message, sound);
+        }
+    }
+
+    private void deliver(Player player, Component message, MessageService.SoundCue sound) {
+        player.sendMessage(message);
+        if (sound != null) sound.play(player);
+    }
+
+    private record SectionKey(UUID world, int x, int z) {}
+}
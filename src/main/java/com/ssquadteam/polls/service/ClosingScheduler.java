@@ -0,0 +1,117 @@
+package com.ssquadteam.polls.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel of poll closing times with one-second slots. Scheduling, cancelling and rescheduling are O(1);
+ * {@link #advance()} visits only the slots the clock moved past and returns every poll that came due, so one repeating
+ * task can drive any number of open polls. The clock is injected so the wheel can run on virtual time.
+ */
+public class ClosingScheduler {
+
+    private static final class Node {
+        final UUID pollId;
+        long deadline;
+        int slot = -1;
+        Node prev;
+        Node next;
+
+        Node(UUID pollId) { this.pollId = pollId; }
+    }
+
+    private final Node[] slots;
+    private final int mask;
+    private final Map<UUID, Node> nodes = new HashMap<>();
+    private final LongSupplier clock;
+    private long lastTick;
+
+    /**
+     * @param wheelSize number of one-second slots, rounded up to a power of two
+     * @param clock current time in epoch seconds
+     */
+    public ClosingScheduler(int wheelSize, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize) - 1) << 1;
+        this.slots = new Node[size];
+        this.mask = size - 1;
+        this.clock = clock;
+        this.lastTick = clock.getAsLong();
+    }
+
+    /** Schedules the poll to close at {@code deadline}, replacing any earlier schedule. Past deadlines fire on the next advance. */
+    public synchronized void schedule(UUID pollId, long deadline) {
+        Node node = nodes.get(pollId);
+        if (node == null) {
+            node = new Node(pollId);
+            nodes.put(pollId, node);
+        } else {
+            unlink(node);
+        }
+        node.deadline = deadline;
+        link(node, (int) (Math.max(deadline, lastTick + 1) & mask));
+    }
+
+    public synchronized boolean cancel(UUID pollId) {
+        Node node = nodes.remove(pollId);
+        if (node == null) return false;
+        unlink(node);
+        return true;
+    }
+
+    public synchronized boolean isScheduled(UUID pollId) { return nodes.containsKey(pollId); }
+
+    public synchronized int size() { return nodes.size(); }
+
+    public synchronized void clear() {
+        Arrays.fill(slots, null);
+        nodes.clear();
+    }
+
+    /**
+     * Moves the wheel up to the clock's current second and removes and returns every poll whose deadline has passed.
+     * After a long pause each slot is visited at most once.
+     */
+    public synchronized List<UUID> advance() {
+        long now = clock.getAsLong();
+        if (now <= lastTick) return List.of();
+        List<UUID> due = new ArrayList<>();
+        long ticks = Math.min(now - lastTick, slots.length);
+        for (long tick = lastTick + 1; tick <= lastTick + ticks; tick++) {
+            Node node = slots[(int) (tick & mask)];
+            while (node != null) {
+                Node next = node.next;
+                if (node.deadline <= now) {
+                    unlink(node);
+                    nodes.remove(node.pollId);
+                    due.add(node.pollId);
+                }
+                node = next;
+            }
+        }
+        lastTick = now;
+        return due;
+    }
+
+    private void link(Node node, int slot) {
+        Node head = slots[slot];
+        node.slot = slot;
+        node.prev = null;
+        node.next = head;
+        if (head != null) head.prev = node;
+        slots[slot] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev != null) node.prev.next = node.next;
+        else if (node.slot >= 0) slots[node.slot] = node.next;
+        if (node.next != null) node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+        node.slot = -1;
+    }
+}
@@ -0,0 +1,170 @@
+package com.ssquadteam.polls.service;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.event.ClickEvent;
+import net.kyori.adventure.text.event.HoverEvent;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A MiniMessage string parsed once, with its placeholder tokens left as slots in the component tree. Rendering
+ * writes the values into those slots instead of substituting them into the string and parsing it again.
+ * <p>
+ * The result equals what {@code raw.replace(token, value)} for each token followed by a parse would give. Values
+ * that could change how the surrounding markup parses, and templates whose slots do not end up in plain text, hover
+ * text or click values (gradients split text per character, for example), take that slow path instead.
+ */
+public final class ComponentTemplate {
+
+    // Private use characters mark the slots while the template is parsed
+    private static final char MARK = '\uE000';
+    private static final char FIRST_SLOT = '\uE001';
+    private static final int MAX_SLOTS = 64;
+
+    private final MiniMessage mm;
+    private final String raw;
+    private final String[] tokens;
+    private final Component parsed;
+    private final int slots;
+    private final boolean slotsInTags;
+
+    private ComponentTemplate(MiniMessage mm, String raw, String[] tokens, Component parsed, int slots, boolean slotsInTags) {
+        this.mm = mm;
+        this.raw = raw;
+        this.tokens = tokens;
+        this.parsed = parsed;
+        this.slots = slots;
+        this.slotsInTags = slotsInTags;
+    }
+
+    public static ComponentTemplate compile(MiniMessage mm, String raw, String... tokens) {
+        if (raw.indexOf(MARK) >= 0 || tokens.length > MAX_SLOTS) {
+            return new ComponentTemplate(mm, raw, tokens, null, -1, false);
+        }
+        String marked = raw;
+        int slots = 0;
+        for (int k = 0; k < tokens.length; k++) {
+            slots += occurrences(marked, tokens[k]);
+            marked = marked.replace(tokens[k], String.valueOf(new char[]{MARK, (char) (FIRST_SLOT + k)}));
+        }
+        Component parsed = mm.deserialize(marked);
+        if (slots == 0) return new ComponentTemplate(mm, raw, tokens, parsed, 0, false);
+        int[] found = new int[2];
+        count(parsed, found, false);
+        if (found[0] + found[1] != slots) {
+            return new ComponentTemplate(mm, raw, tokens, null, -1, false);
+        }
+        return new ComponentTemplate(mm, raw, tokens, parsed, slots, found[1] > 0);
+    }
+
+    /** Fills the slots with {@code values}, given in the same order as the tokens passed to {@link #compile}. */
+    public Component render(String... values) {
+        Component filled = fill(values);
+        return filled != null ? filled : reparse(values);
+    }
+
+    /** Like {@link #render}, but returns null instead of reparsing when the values cannot be written in place. */
+    public Component fill(String... values) {
+        if (slots == 0) return parsed;
+        if (slots < 0) return null;
+        for (String value : values) {
+            if (!isPlain(value)) return null;
+        }
+        return fill(parsed, values);
+    }
+
+    private Component reparse(String[] values) {
+        String result = raw;
+        for (int k = 0; k < tokens.length; k++) result = result.replace(tokens[k], values[k]);
+        return mm.deserialize(result);
+    }
+
+    /** Whether {@code value} reads as literal text wherever a slot sits, so writing it into the tree matches a reparse. */
+    private boolean isPlain(String value) {
+        if (value == null || value.isEmpty()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '<', '>', '\\', '\'', '"', '{', '%' -> { return false; }
+                case ':' -> { if (slotsInTags) return false; }
+                default -> { if (ch >= MARK && ch < FIRST_SLOT + MAX_SLOTS) return false; }
+            }
+        }
+        for (String token : tokens) {
+            if (value.contains(token)) return false;
+        }
+        return true;
+    }
+
+    private Component fill(Component component, String[] values) {
+        Component out = component;
+        if (component instanceof TextComponent text && text.content().indexOf(MARK) >= 0) {
+            out = text.content(substitute(text.content(), values));
+        }
+        HoverEvent<?> hover = component.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            Component shown = (Component) hover.value();
+            Component filled = fill(shown, values);
+            if (filled != shown) out = out.hoverEvent(HoverEvent.showText(filled));
+        }
+        ClickEvent click = component.clickEvent();
+        if (click != null && click.value().indexOf(MARK) >= 0) {
+            out = out.clickEvent(ClickEvent.clickEvent(click.action(), substitute(click.value(), values)));
+        }
+        List<Component> children = component.children();
+        List<Component> filledChildren = null;
+        for (int i = 0; i < children.size(); i++) {
+            Component child = children.get(i);
+            Component filled = fill(child, values);
+            if (filled != child && filledChildren == null) {
+                filledChildren = new ArrayList<>(children);
+            }
+            if (filledChildren != null) filledChildren.set(i, filled);
+        }
+        return filledChildren == null ? out : out.children(filledChildren);
+    }
+
+    private static String substitute(String content, String[] values) {
+        StringBuilder sb = new StringBuilder(content.length() + 16);
+        for (int i = 0; i < content.length(); i++) {
+            char ch = content.charAt(i);
+            if (ch == MARK && i + 1 < content.length()) {
+                sb.append(values[content.charAt(++i) - FIRST_SLOT]);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Counts slot marks in text ({@code found[0]}) and inside hover or click arguments ({@code found[1]}). */
+    private static void count(Component component, int[] found, boolean inTag) {
+        if (component instanceof TextComponent text) {
+            found[inTag ? 1 : 0] += occurrences(text.content(), MARK);
+        }
+        HoverEvent<?> hover = component.hoverEvent();
+        if (hover != null && hover.action() == HoverEvent.Action.SHOW_TEXT) {
+            count((Component) hover.value(), found, true);
+        }
+        ClickEvent click = component.clickEvent();
+        if (click != null) found[1] += occurrences(click.value(), MARK);
+        for (Component child : component.children()) count(child, found, inTag);
+    }
+
+    private static int occurrences(String s, String token) {
+        int n = 0;
+        for (int i = s.indexOf(token); i >= 0; i = s.indexOf(token, i + token.length())) n++;
+        return n;
+    }
+
+    private static int occurrences(String s, char ch) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == ch) n++;
+        }
+        return n;
+    }
+}
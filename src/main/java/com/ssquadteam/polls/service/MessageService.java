@@ -1,5 +1,7 @@
 package com.ssquadteam.polls.service;
 
+import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.metrics.LatencyTimer;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 import org.bukkit.command.CommandSender;
@@ -10,39 +12,138 @@ import org.bukkit.Sound;
 import org.bukkit.entity.Player;
 
 import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class MessageService {
 
     private final Plugin plugin;
     private final MiniMessage mm = MiniMessage.miniMessage();
-    private FileConfiguration messages;
+    private volatile Messages messages;
+    private final BroadcastDispatcher dispatcher;
+    private final LatencyTimer broadcastTimer;
     private static final Pattern LEGACY_COLOR = Pattern.compile("(?i)[§&][0-9A-FK-OR]");
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^{}]+)}");
+
+    /** messages.yml as of the last reload, with each message parsed behind the prefix on first use or at load. */
+    private record Messages(FileConfiguration yaml, String prefix, Map<String, Template> templates) {}
+
+    /**
+     * One message with the prefix in front. {@code whole} is the parse without placeholders filled in; {@code slotted}
+     * has the message's placeholders as slots, or is null when they have to go through {@link #apply} instead.
+     */
+    private record Template(String raw, Component whole, ComponentTemplate slotted, String[] keys) {}
+
+    /** A {@code sounds.*} entry resolved once, so a broadcast does not look it up again for every player. */
+    public record SoundCue(Sound sound, String key) {
+        public void play(Player player) {
+            if (sound != null) {
+                player.playSound(player.getLocation(), sound, 1f, 1f);
+            } else {
+                player.playSound(player.getLocation(), key, 1f, 1f);
+            }
+        }
+    }
 
     public MessageService(Plugin plugin) {
         this.plugin = plugin;
+        if (plugin instanceof PollsPlugin polls) {
+            this.dispatcher = new BroadcastDispatcher(polls);
+            this.broadcastTimer = polls.getMetrics().timer("messages.broadcast");
+        } else {
+            this.dispatcher = null;
+            this.broadcastTimer = null;
+        }
         reload();
     }
 
     public void reload() {
         File file = new File(plugin.getDataFolder(), "messages.yml");
-        this.messages = YamlConfiguration.loadConfiguration(file);
+        FileConfiguration yaml = YamlConfiguration.loadConfiguration(file);
+        // Keys added in newer versions fall back to the bundled messages.yml
+        InputStream bundled = plugin.getResource("messages.yml");
+        if (bundled != null) {
+            yaml.setDefaults(YamlConfiguration.loadConfiguration(new InputStreamReader(bundled, StandardCharsets.UTF_8)));
+        }
+        String prefix = yaml.getString("prefix", "");
+        Set<String> paths = new LinkedHashSet<>(yaml.getKeys(true));
+        if (yaml.getDefaults() != null) paths.addAll(yaml.getDefaults().getKeys(true));
+        Map<String, Template> templates = new ConcurrentHashMap<>();
+        for (String path : paths) {
+            if (yaml.isString(path)) templates.put(path, compile(prefix, yaml.getString(path)));
+        }
+        // Senders pick up the new snapshot as a whole, never a mix of old and new messages
+        this.messages = new Messages(yaml, prefix, templates);
+    }
+
+    private Template compile(String prefix, String raw) {
+        Component whole = mm.deserialize(prefix + raw);
+        Set<String> keys = new LinkedHashSet<>();
+        Matcher matcher = PLACEHOLDER.matcher(raw);
+        while (matcher.find()) keys.add(matcher.group(1));
+        if (keys.isEmpty()) return new Template(raw, whole, null, new String[0]);
+        String[] tokens = new String[keys.size()];
+        int i = 0;
+        for (String key : keys) {
+            tokens[i] = "{" + key + "}";
+            // apply() never touches the prefix, so a placeholder in it has to stay literal
+            if (prefix.contains(tokens[i])) return new Template(raw, whole, null, keys.toArray(new String[0]));
+            i++;
+        }
+        return new Template(raw, whole, ComponentTemplate.compile(mm, prefix + raw, tokens), keys.toArray(new String[0]));
+    }
+
+    private String lookup(String path) {
+        return lookup(messages.yaml(), path);
+    }
+
+    private static String lookup(FileConfiguration yaml, String path) {
+        String value = yaml.getString(path);
+        return value == null ? path : value;
+    }
+
+    /** Same component as parsing the prefix plus {@link #format}, reusing the parse from the last reload where it can. */
+    private Component render(String path, Map<String, String> placeholders) {
+        Messages snapshot = messages;
+        Template template = snapshot.templates().computeIfAbsent(path, p -> compile(snapshot.prefix(), lookup(snapshot.yaml(), p)));
+        if (placeholders == null || placeholders.isEmpty() || template.keys().length == 0) return template.whole();
+        Component filled = fill(template, placeholders);
+        return filled != null ? filled : mm.deserialize(snapshot.prefix() + apply(placeholders, template.raw()));
+    }
+
+    private Component fill(Template template, Map<String, String> placeholders) {
+        if (template.slotted() == null) return null;
+        String[] values = new String[template.keys().length];
+        for (int i = 0; i < values.length; i++) {
+            String value = placeholders.get(template.keys()[i]);
+            if (value == null) return null;
+            values[i] = sanitizeForMiniMessage(value);
+        }
+        return template.slotted().fill(values);
+    }
+
+    /** The message at {@code path} with placeholders filled in, without the prefix. */
+    public String format(String path, Map<String, String> placeholders) {
+        return apply(placeholders, lookup(path));
     }
 
     public Component parse(String raw) { return mm.deserialize(raw); }
 
     public void send(CommandSender sender, String path, Map<String, String> placeholders) {
-        String prefix = messages.getString("prefix", "");
-        String value = messages.getString(path, path);
-        value = apply(placeholders, value);
-        Component component = mm.deserialize(prefix + value);
+        Component component = render(path, placeholders);
 
         if (sender instanceof Player player) {
             if (plugin instanceof com.ssquadteam.polls.PollsPlugin polls) {
@@ -71,25 +172,20 @@ public class MessageService {
     }
 
     public void broadcast(String path, Map<String, String> placeholders) {
-        String value = messages.getString(path, path);
-        String rendered = apply(placeholders, value);
-        Component component = mm.deserialize(messages.getString("prefix", "") + rendered);
+        long start = System.nanoTime();
+        Component component = render(path, placeholders);
+        SoundCue sound = resolveSound("ui.publish");
 
-        if (plugin instanceof com.ssquadteam.polls.PollsPlugin polls) {
-            for (Player p : plugin.getServer().getOnlinePlayers()) {
-                polls.getFolia().getScheduler().runAtEntity(p, task -> p.sendMessage(component));
-            }
+        if (dispatcher != null) {
+            dispatcher.dispatch(plugin.getServer().getOnlinePlayers(), component, sound);
             plugin.getServer().getConsoleSender().sendMessage(component);
         } else {
             plugin.getServer().broadcast(component);
-        }
-
-        String soundKey = plugin.getConfig().getString("sounds.ui.publish");
-        if (plugin.getConfig().getBoolean("sounds.enabled", true) && soundKey != null) {
-            for (Player p : plugin.getServer().getOnlinePlayers()) {
-                playSound(p, "ui.publish");
+            if (sound != null) {
+                for (Player p : plugin.getServer().getOnlinePlayers()) sound.play(p);
             }
         }
+        if (broadcastTimer != null) broadcastTimer.recordSince(start);
     }
 
     public String formatRelativeTime(long closesAtEpochSeconds) {
@@ -120,30 +216,37 @@ public class MessageService {
         return fmt.format(date);
     }
 
+    /** The sound configured at {@code sounds.<keyPath>}, or null when sounds are off or nothing usable is set. */
+    public SoundCue resolveSound(String keyPath) {
+        if (!plugin.getConfig().getBoolean("sounds.enabled", true)) return null;
+        String soundKey = plugin.getConfig().getString("sounds." + keyPath);
+        if (soundKey == null || soundKey.isBlank()) return null;
+        try {
+            return new SoundCue(Sound.valueOf(soundKey.toUpperCase(Locale.ROOT)), null);
+        } catch (IllegalArgumentException ex) {
+            try {
+                return new SoundCue(null, org.bukkit.NamespacedKey.minecraft(soundKey).toString());
+            } catch (IllegalArgumentException invalid) {
+                plugin.getLogger().warning("Invalid sound '" + soundKey + "' at sounds." + keyPath);
+                return null;
+            }
+        }
+    }
+
     public void playSound(Player player, String keyPath) {
         if (player == null) return;
-        if (!plugin.getConfig().getBoolean("sounds.enabled", true)) return;
-        String soundKey = plugin.getConfig().getString("sounds." + keyPath);
-        if (soundKey == null || soundKey.isBlank()) return;
+        SoundCue sound = resolveSound(keyPath);
+        if (sound == null) return;
         if (plugin instanceof com.ssquadteam.polls.PollsPlugin polls) {
-            polls.getFolia().getScheduler().runAtEntity(player, task -> {
-                try {
-                    player.playSound(player.getLocation(), org.bukkit.Sound.valueOf(soundKey.toUpperCase(Locale.ROOT)), 1f, 1f);
-                } catch (IllegalArgumentException ex) {
-                    player.playSound(player.getLocation(), org.bukkit.NamespacedKey.minecraft(soundKey).toString(), 1f, 1f);
-                }
-            });
+            polls.getFolia().getScheduler().runAtEntity(player, task -> sound.play(player));
         } else {
-            try {
-                player.playSound(player.getLocation(), org.bukkit.Sound.valueOf(soundKey.toUpperCase(Locale.ROOT)), 1f, 1f);
-            } catch (IllegalArgumentException ex) {
-                player.playSound(player.getLocation(), org.bukkit.NamespacedKey.minecraft(soundKey).toString(), 1f, 1f);
-            }
+            sound.play(player);
         }
     }
 
     public String sanitizeForMiniMessage(String input) {
         if (input == null) return "";
+        if (input.indexOf('§') < 0 && input.indexOf('&') < 0) return input;
         // Strip legacy color codes like §a and &a
         return LEGACY_COLOR.matcher(input).replaceAll("");
     }
@@ -1,32 +1,107 @@
 package com.ssquadteam.polls.service;
 
 import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.cluster.ClusterEvent;
+import com.ssquadteam.polls.cluster.ClusterEventBus;
+import com.ssquadteam.polls.metrics.LatencyTimer;
 import com.ssquadteam.polls.model.Poll;
 import com.ssquadteam.polls.model.PollStatus;
 import com.ssquadteam.polls.service.session.PollCreationSession;
+import com.ssquadteam.polls.storage.AsyncPollStorage;
 import com.ssquadteam.polls.storage.PollStorage;
+import com.ssquadteam.polls.storage.StorageException;
+import com.ssquadteam.polls.storage.VoterFilters;
 import com.ssquadteam.polls.util.DurationUtil;
 import com.tcoded.folialib.wrapper.task.WrappedTask;
 import org.bukkit.entity.Player;
 
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PollManager {
 
     private final PollsPlugin plugin;
-    private final PollStorage storage;
+    private final AsyncPollStorage storage;
     private final MessageService messages;
 
-    private final Map<UUID, WrappedTask> scheduledTasks = new HashMap<>();
+    // One-second slots; a full turn covers about an hour, longer polls just wait out extra turns in their slot
+    private static final int CLOSING_WHEEL_SLOTS = 4096;
+    private static final long MAX_CLOSE_RETRY_SECONDS = 300;
 
-    public PollManager(PollsPlugin plugin, PollStorage storage) {
+    private final ClosingScheduler closings = new ClosingScheduler(CLOSING_WHEEL_SLOTS, () -> Instant.now().getEpochSecond());
+    private final Map<UUID, Poll> openPolls = new ConcurrentHashMap<>();
+    // Failed close attempts per poll, for the retry backoff
+    private final Map<UUID, Integer> closeFailures = new ConcurrentHashMap<>();
+    private final WrappedTask closingTask;
+    private final VoteAdmission admission;
+    private final LatencyTimer voteTimer;
+    private final LatencyTimer closeTimer;
+    private volatile ClusterEventBus cluster;
+
+    public PollManager(PollsPlugin plugin, AsyncPollStorage storage) {
         this.plugin = plugin;
         this.storage = storage;
         this.messages = plugin.getMessageService();
+        this.closingTask = plugin.getFolia().getScheduler().runTimer(this::closeDuePolls, 20L, 20L);
+        this.admission = new VoteAdmission(
+                plugin.getConfig().getInt("votes.rate-limit.burst", 4),
+                plugin.getConfig().getDouble("votes.rate-limit.per-second", 2.0));
+        this.voteTimer = plugin.getMetrics().timer("manager.vote");
+        this.closeTimer = plugin.getMetrics().timer("manager.closePoll");
+    }
+
+    /** Shares poll changes with the other servers and keeps this server's closing schedule in step with theirs. */
+    public void attachCluster(ClusterEventBus bus) {
+        this.cluster = bus;
+        bus.subscribe(this::onClusterEvent);
+    }
+
+    private void onClusterEvent(ClusterEvent event) {
+        UUID id = event.getPollId();
+        switch (event.getType()) {
+            case POLL_CREATED, POLL_EDITED -> storage.getPoll(id).thenAccept(poll -> {
+                if (poll != null && poll.isOpen()) trackOpenPoll(poll);
+                else untrack(id);
+            }).exceptionally(storage.failure("load remote poll"));
+            case POLL_CLOSED -> {
+                untrack(id);
+                // The closing server already counted the votes; only announce them to the players here
+                if (event.getCounts() != null) {
+                    storage.getPoll(id).thenAccept(poll -> {
+                        if (poll != null) announceResults(poll, event.getCounts());
+                    }).exceptionally(storage.failure("announce remote close"));
+                }
+            }
+            case POLL_REMOVED -> untrack(id);
+            case RESYNC -> storage.findOpenPolls(Long.MAX_VALUE).thenAccept(open -> {
+                Set<UUID> ids = new HashSet<>();
+                for (Poll poll : open) {
+                    ids.add(poll.getId());
+                    trackOpenPoll(poll);
+                }
+                for (UUID tracked : openPolls.keySet()) {
+                    if (!ids.contains(tracked)) untrack(tracked);
+                }
+            }).exceptionally(storage.failure("resync open polls"));
+            default -> {}
+        }
     }
 
-    public PollStorage getStorage() { return storage; }
+    private void publishEvent(ClusterEvent.Type type, UUID pollId) {
+        publishEvent(type, pollId, null);
+    }
+
+    private void publishEvent(ClusterEvent.Type type, UUID pollId, int[] counts) {
+        ClusterEventBus bus = cluster;
+        if (bus != null) bus.publish(type, pollId, counts);
+    }
+
+    public PollStorage getStorage() { return storage.getDelegate(); }
+    public AsyncPollStorage getAsyncStorage() { return storage; }
+    public VoteAdmission getVoteAdmission() { return admission; }
+    public int getOpenPollCount() { return openPolls.size(); }
 
     public void publishFromSession(Player player, PollCreationSession session) {
         List<String> options = session.getDefinedOptions();
@@ -38,89 +113,172 @@ public class PollManager {
             messages.send(player, "errors.missing_code", Map.of());
             return;
         }
-        if (!session.isEditingExisting()) {
-            if (storage.findByIdOrCode(session.getCode()) != null) {
-                messages.send(player, "errors.code_in_use", Map.of());
-                return;
-            }
-        }
         long duration = session.getDurationSeconds() == null ? DurationUtil.DEFAULT_DURATION_SECONDS : session.getDurationSeconds();
         long now = Instant.now().getEpochSecond();
         long closesAt = now + duration;
-        UUID id;
-        Poll poll;
-        if (session.isEditingExisting()) {
-            poll = storage.getPoll(session.getEditingPollId());
-            if (poll == null) { messages.send(player, "errors.invalid_poll", Map.of()); return; }
-            if (poll.getStatus() == PollStatus.CLOSED) {
-                messages.send(player, "errors.cannot_edit_closed", Map.of());
-                return;
+        CompletableFuture<Poll> lookup = session.isEditingExisting()
+                ? storage.getPoll(session.getEditingPollId())
+                : storage.findByIdOrCode(session.getCode());
+        lookup.thenCompose(found -> {
+            Poll poll;
+            if (session.isEditingExisting()) {
+                if (found == null) { messages.send(player, "errors.invalid_poll", Map.of()); return CompletableFuture.completedFuture(null); }
+                if (found.getStatus() == PollStatus.CLOSED) {
+                    messages.send(player, "errors.cannot_edit_closed", Map.of());
+                    return CompletableFuture.completedFuture(null);
+                }
+                poll = found;
+                poll.setQuestion(session.getQuestion() == null ? poll.getQuestion() : session.getQuestion());
+                poll.setOptions(options);
+                poll.setClosesAtEpochSeconds(closesAt);
+                poll.setStatus(PollStatus.OPEN);
+                poll.setCode(session.getCode());
+            } else {
+                if (found != null) {
+                    messages.send(player, "errors.code_in_use", Map.of());
+                    return CompletableFuture.completedFuture(null);
+                }
+                poll = new Poll(UUID.randomUUID(), session.getQuestion() == null ? "Untitled Poll" : session.getQuestion(), options, now, closesAt, PollStatus.OPEN);
+                poll.setCode(session.getCode());
+                // Nobody can vote before the poll is saved, so its filter starts empty and complete
+                storage.primeNewPoll(poll.getId());
             }
-            poll.setQuestion(session.getQuestion() == null ? poll.getQuestion() : session.getQuestion());
-            poll.setOptions(options);
-            poll.setClosesAtEpochSeconds(closesAt);
-            poll.setStatus(PollStatus.OPEN);
-            poll.setCode(session.getCode());
-            id = poll.getId();
-            storage.savePoll(poll);
-            // reschedule
-            trackOpenPoll(poll);
-        } else {
-            id = UUID.randomUUID();
-            poll = new Poll(id, session.getQuestion() == null ? "Untitled Poll" : session.getQuestion(), options, now, closesAt, PollStatus.OPEN);
-            poll.setCode(session.getCode());
-            storage.savePoll(poll);
+            return storage.savePoll(poll).thenApply(v -> poll);
+        }).thenAccept(poll -> {
+            if (poll == null) return;
+            // (re)schedule closing
             trackOpenPoll(poll);
-        }
-        plugin.getSessionManager().endSession(player.getUniqueId());
+            publishEvent(session.isEditingExisting() ? ClusterEvent.Type.POLL_EDITED : ClusterEvent.Type.POLL_CREATED, poll.getId());
+            plugin.getFolia().getScheduler().runAtEntity(player, task -> plugin.getSessionManager().endSession(player.getUniqueId()));
 
-        Map<String, String> ph = Map.of(
-                "code", poll.getCode(),
-                "question", poll.getQuestion(),
-                "pretty", messages.formatRelativeTime(poll.getClosesAtEpochSeconds())
-        );
-        messages.broadcast("announce.new_poll", ph);
-        messages.send(player, "creation.published", Map.of("code", poll.getCode()));
+            Map<String, String> ph = Map.of(
+                    "code", poll.getCode(),
+                    "question", poll.getQuestion(),
+                    "pretty", messages.formatRelativeTime(poll.getClosesAtEpochSeconds())
+            );
+            messages.broadcast("announce.new_poll", ph);
+            messages.send(player, "creation.published", Map.of("code", poll.getCode()));
+        }).exceptionally(storage.failure("publish poll"));
     }
 
     public void trackOpenPoll(Poll poll) {
-        long delayTicks = Math.max(1, (poll.getClosesAtEpochSeconds() - Instant.now().getEpochSecond()) * 20);
-        WrappedTask existing = scheduledTasks.remove(poll.getId());
-        if (existing != null) existing.cancel();
-        WrappedTask task = plugin.getFolia().getScheduler().runTimer(() -> closePoll(poll, false), delayTicks, Long.MAX_VALUE);
-        scheduledTasks.put(poll.getId(), task);
+        openPolls.put(poll.getId(), poll);
+        closings.schedule(poll.getId(), poll.getClosesAtEpochSeconds());
+    }
+
+    /**
+     * Startup: closes every poll that expired while the server was down in one batch, then schedules the rest.
+     */
+    public void resumeOpenPolls() {
+        PollStorage store = getStorage();
+        long now = Instant.now().getEpochSecond();
+        List<Poll> due;
+        List<Poll> scheduled;
+        try {
+            due = store.findOpenPolls(now);
+            scheduled = store.findOpenPolls(Long.MAX_VALUE);
+        } catch (StorageException e) {
+            plugin.getLogger().severe("Failed to resume open polls: " + e.getMessage());
+            return;
+        }
+        List<UUID> expired = new ArrayList<>();
+        for (Poll poll : due) {
+            // Tracked until the close is written, so a failed one is retried
+            openPolls.put(poll.getId(), poll);
+            expired.add(poll.getId());
+        }
+        if (!expired.isEmpty()) {
+            plugin.getLogger().info("Closing " + expired.size() + " polls that expired while the server was offline");
+            closeAndAnnounce(expired).exceptionally(storage.failure("close expired polls"));
+        }
+        List<UUID> open = new ArrayList<>();
+        for (Poll poll : scheduled) {
+            if (poll.getClosesAtEpochSeconds() > now) {
+                trackOpenPoll(poll);
+                open.add(poll.getId());
+            }
+        }
+        VoterFilters filters = storage.getVoterFilters();
+        if (filters != null) {
+            storage.primeVoterFilters(open).thenRun(() -> plugin.getLogger().info(String.format(
+                    "Vote filters ready for %d polls: %.1f KiB, target false-positive rate %.2f%%",
+                    filters.polls(), filters.memoryBytes() / 1024.0, filters.targetFalsePositiveRate() * 100)))
+                    .exceptionally(storage.failure("load vote filters"));
+        }
     }
 
-    public void closePoll(Poll poll, boolean manual) {
-        poll.setStatus(PollStatus.CLOSED);
-        storage.savePoll(poll);
-        WrappedTask task = scheduledTasks.remove(poll.getId());
-        if (task != null) task.cancel();
+    /** Closes every poll whose time ran out since the last run; called once a second by the closing task. */
+    private void closeDuePolls() {
+        List<UUID> due = closings.advance();
+        if (due.isEmpty()) return;
+        List<UUID> ids = new ArrayList<>(due.size());
+        for (UUID id : due) {
+            if (openPolls.containsKey(id)) ids.add(id);
+        }
+        if (!ids.isEmpty()) closeAndAnnounce(ids).exceptionally(storage.failure("close polls"));
+    }
 
-        announceResults(poll);
+    /**
+     * Closes the polls and reads their stored tallies in one storage call, then announces the results a few per tick so
+     * a large batch doesn't flood chat in a single tick. The write only changes polls that are still open, so when
+     * several servers race to close the same poll exactly one of them gets it back, counts it and shares the result.
+     * The counts come from the database, not this server's counters, which can lag the other servers.
+     * <p>
+     * The polls stay tracked until the write succeeds. If it fails they are scheduled again with a growing delay and
+     * the returned future fails.
+     */
+    private CompletableFuture<Void> closeAndAnnounce(List<UUID> ids) {
+        return storage.closePollsCounted(ids).whenComplete((result, e) -> {
+            if (e != null) retryClose(ids);
+        }).thenAccept(result -> {
+            // Ids that did not come back were no longer open in storage, closed by another server or removed
+            for (UUID id : ids) untrack(id);
+            List<Poll> closed = result.getPolls();
+            int perTick = Math.max(1, plugin.getConfig().getInt("closing.announcements-per-tick", 2));
+            for (int i = 0; i < closed.size(); i++) {
+                Poll poll = closed.get(i);
+                int[] pollCounts = result.getCounts().getOrDefault(poll.getId(), new int[Poll.MAX_OPTIONS]);
+                publishEvent(ClusterEvent.Type.POLL_CLOSED, poll.getId(), pollCounts);
+                plugin.getFolia().getScheduler().runLater(() -> announceResults(poll, pollCounts), 1L + i / perTick);
+            }
+        });
     }
 
-    private void announceResults(Poll poll) {
-        Map<Integer, Integer> tally = storage.getVoteTally(poll.getId());
+    public CompletableFuture<Void> closePoll(Poll poll, boolean manual) {
+        long start = System.nanoTime();
+        closings.cancel(poll.getId());
+        return timed(closeTimer, start, closeAndAnnounce(List.of(poll.getId())));
+    }
 
-        if (tally.isEmpty()) {
-            Map<String, String> ph = Map.of(
-                "question", poll.getQuestion()
-            );
-            messages.broadcast("announce.poll_closed_no_votes", ph);
-            return;
+    private void retryClose(List<UUID> ids) {
+        long now = Instant.now().getEpochSecond();
+        for (UUID id : ids) {
+            // Untracked meanwhile: removed, or closed by another server
+            if (!openPolls.containsKey(id)) continue;
+            int failures = closeFailures.merge(id, 1, Integer::sum);
+            closings.schedule(id, now + Math.min(MAX_CLOSE_RETRY_SECONDS, 1L << Math.min(failures, 9)));
         }
+    }
 
+    private void announceResults(Poll poll, int[] counts) {
         int maxVotes = 0;
-        for (Integer votes : tally.values()) {
+        for (int votes : counts) {
             if (votes > maxVotes) {
                 maxVotes = votes;
             }
         }
+        if (maxVotes == 0) {
+            Map<String, String> ph = Map.of(
+                "question", poll.getQuestion()
+            );
+            messages.broadcast("announce.poll_closed_no_votes", ph);
+            return;
+        }
+
         List<Integer> winners = new ArrayList<>();
-        for (Map.Entry<Integer, Integer> entry : tally.entrySet()) {
-            if (entry.getValue() == maxVotes) {
-                winners.add(entry.getKey());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == maxVotes) {
+                winners.add(i);
             }
         }
 
@@ -142,25 +300,80 @@ public class PollManager {
         }
     }
 
-    public void removePoll(UUID id) {
-        WrappedTask task = scheduledTasks.remove(id);
-        if (task != null) task.cancel();
-        storage.removePoll(id);
+    /** Removes the poll; the returned future fails if storage could not delete it, and the poll stays scheduled. */
+    public CompletableFuture<Void> removePoll(UUID id) {
+        return storage.removePoll(id).thenRun(() -> {
+            untrack(id);
+            publishEvent(ClusterEvent.Type.POLL_REMOVED, id);
+        });
+    }
+
+    public CompletableFuture<Void> vote(Player player, UUID pollId, int optionIndex) {
+        return storage.getPoll(pollId)
+                .thenCompose((Poll poll) -> vote(player, poll, optionIndex))
+                .exceptionally(storage.failure("record vote"));
+    }
+
+    public CompletableFuture<Void> vote(Player player, Poll poll, int optionIndex) {
+        if (poll == null) { messages.sendWithSound(player, "errors.invalid_poll", Map.of(), "ui.error"); return done(); }
+        if (!poll.isOpen()) { messages.sendWithSound(player, "errors.poll_closed", Map.of(), "ui.error"); return done(); }
+        long start = System.nanoTime();
+        UUID pollId = poll.getId();
+        UUID playerId = player.getUniqueId();
+        return timed(voteTimer, start, admission.submit(pollId, playerId, () -> storeVote(player, poll, optionIndex),
+                () -> messages.sendWithSound(player, "errors.already_voted", Map.of(), "ui.error"),
+                () -> messages.sendWithSound(player, "errors.vote_too_fast", Map.of(), "ui.error")
+        )).exceptionally(storage.failure("record vote"));
     }
 
-    public void vote(Player player, UUID pollId, int optionIndex) {
-        Poll poll = storage.getPoll(pollId);
-        if (poll == null) { messages.sendWithSound(player, "errors.invalid_poll", Map.of(), "ui.error"); return; }
-        if (!poll.isOpen()) { messages.sendWithSound(player, "errors.poll_closed", Map.of(), "ui.error"); return; }
-        if (storage.hasVoted(pollId, player.getUniqueId())) { messages.sendWithSound(player, "errors.already_voted", Map.of(), "ui.error"); return; }
-        if (optionIndex < 0 || optionIndex >= poll.getOptions().size()) { messages.sendWithSound(player, "errors.invalid_option", Map.of(), "ui.error"); return; }
+    /** Records how long {@code future} took from {@code start}, before any failure handler swallows its error. */
+    private static CompletableFuture<Void> timed(LatencyTimer timer, long start, CompletableFuture<Void> future) {
+        return future.whenComplete((v, e) -> {
+            if (e != null) timer.recordError();
+            timer.recordSince(start);
+        });
+    }
+
+    private CompletableFuture<Void> storeVote(Player player, Poll poll, int optionIndex) {
+        UUID pollId = poll.getId();
+        UUID playerId = player.getUniqueId();
+        return storage.hasVoted(pollId, playerId).thenCompose(voted -> {
+            if (voted) {
+                admission.markVoted(pollId, playerId);
+                messages.sendWithSound(player, "errors.already_voted", Map.of(), "ui.error");
+                return done();
+            }
+            if (optionIndex < 0 || optionIndex >= poll.getOptions().size()) { messages.sendWithSound(player, "errors.invalid_option", Map.of(), "ui.error"); return done(); }
 
-        storage.saveVote(pollId, player.getUniqueId(), optionIndex);
-        messages.sendWithSound(player, "vote.success", Map.of("index", String.valueOf(optionIndex + 1)), "ui.set_value");
+            return storage.saveVote(pollId, playerId, optionIndex).thenAccept(accepted -> {
+                // Recorded now or by an earlier vote: either way storage holds a vote from this player. A failed
+                // write throws instead, and the player may try again
+                admission.markVoted(pollId, playerId);
+                if (accepted) messages.sendWithSound(player, "vote.success", Map.of("index", String.valueOf(optionIndex + 1)), "ui.set_value");
+                else messages.sendWithSound(player, "errors.already_voted", Map.of(), "ui.error");
+            });
+        }).whenComplete((v, e) -> {
+            if (e != null) messages.sendWithSound(player, "errors.storage_failed", Map.of(), "ui.error");
+        });
+    }
+
+    private void untrack(UUID id) {
+        openPolls.remove(id);
+        closeFailures.remove(id);
+        closings.cancel(id);
+        admission.forgetPoll(id);
+        storage.dropVoterFilter(id);
     }
 
     public void shutdown() {
-        for (WrappedTask task : scheduledTasks.values()) task.cancel();
-        scheduledTasks.clear();
+        closingTask.cancel();
+        closings.clear();
+        openPolls.clear();
+        closeFailures.clear();
+        admission.clear();
+    }
+
+    private static CompletableFuture<Void> done() {
+        return CompletableFuture.completedFuture(null);
     }
 }
@@ -6,19 +6,19 @@ import com.ssquadteam.polls.service.session.PollCreationSession;
 import org.bukkit.entity.Player;
 
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/** Creation sessions and drafts. Players on different region threads use it at the same time, so the maps are concurrent. */
 public class SessionManager {
 
     private final PollsPlugin plugin;
-    private final Map<UUID, PollCreationSession> sessions = new HashMap<>();
-    private final Set<UUID> playersWithOpenBooks = new HashSet<>();
-    private final Map<String, PollDraft> drafts = new HashMap<>();
+    private final Map<UUID, PollCreationSession> sessions = new ConcurrentHashMap<>();
+    private final Set<UUID> playersWithOpenBooks = ConcurrentHashMap.newKeySet();
+    private final Map<String, PollDraft> drafts = new ConcurrentHashMap<>();
 
     public SessionManager(PollsPlugin plugin) {
         this.plugin = plugin;
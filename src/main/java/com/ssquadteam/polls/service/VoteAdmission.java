@@ -0,0 +1,115 @@
+package com.ssquadteam.polls.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Sits in front of the storage calls of a vote. A click that repeats a vote still being stored is dropped, a player
+ * already known to have voted in the poll is turned away without a storage round trip, and a per-player token bucket
+ * caps how fast the rest reach storage.
+ */
+public class VoteAdmission {
+
+    private final int burst;
+    private final double tokensPerNano;
+
+    private final Set<VoteKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Set<UUID>> voted = new ConcurrentHashMap<>();
+    private final Map<UUID, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder alreadyVoted = new LongAdder();
+
+    public VoteAdmission(int burst, double perSecond) {
+        this.burst = Math.max(1, burst);
+        this.tokensPerNano = Math.max(0.001, perSecond) / 1_000_000_000.0;
+    }
+
+    /**
+     * Runs {@code vote} unless it can be answered here: {@code onAlreadyVoted} runs for a player known to have voted,
+     * {@code onThrottled} for one who is out of tokens, and a repeat of a vote that is still running does nothing.
+     */
+    public CompletableFuture<Void> submit(UUID pollId, UUID playerId, Supplier<CompletableFuture<Void>> vote,
+                                          Runnable onAlreadyVoted, Runnable onThrottled) {
+        VoteKey key = new VoteKey(pollId, playerId);
+        if (!inFlight.add(key)) {
+            collapsed.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        boolean started = false;
+        try {
+            if (hasVoted(pollId, playerId)) {
+                alreadyVoted.increment();
+                onAlreadyVoted.run();
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!buckets.computeIfAbsent(playerId, id -> new TokenBucket(burst)).tryTake(burst, tokensPerNano, System.nanoTime())) {
+                throttled.increment();
+                onThrottled.run();
+                return CompletableFuture.completedFuture(null);
+            }
+            admitted.increment();
+            CompletableFuture<Void> result = vote.get().whenComplete((v, e) -> inFlight.remove(key));
+            started = true;
+            return result;
+        } finally {
+            if (!started) inFlight.remove(key);
+        }
+    }
+
+    /** Remembers that storage holds a vote from {@code playerId} in {@code pollId}. */
+    public void markVoted(UUID pollId, UUID playerId) {
+        voted.computeIfAbsent(pollId, id -> ConcurrentHashMap.newKeySet()).add(playerId);
+    }
+
+    public boolean hasVoted(UUID pollId, UUID playerId) {
+        Set<UUID> players = voted.get(pollId);
+        return players != null && players.contains(playerId);
+    }
+
+    /** Drops what is known about a poll that closed or was removed. */
+    public void forgetPoll(UUID pollId) {
+        voted.remove(pollId);
+    }
+
+    public void forgetPlayer(UUID playerId) {
+        buckets.remove(playerId);
+    }
+
+    public void clear() {
+        inFlight.clear();
+        voted.clear();
+        buckets.clear();
+    }
+
+    public long admitted() { return admitted.sum(); }
+    public long collapsed() { return collapsed.sum(); }
+    public long throttled() { return throttled.sum(); }
+    public long alreadyVoted() { return alreadyVoted.sum(); }
+
+    private record VoteKey(UUID pollId, UUID playerId) {}
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(int burst) {
+            this.tokens = burst;
+        }
+
+        synchronized boolean tryTake(int burst, double tokensPerNano, long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            if (tokens < 1) return false;
+            tokens--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ssquadteam.polls.storage;
+
+import com.ssquadteam.polls.model.ClosedPolls;
+import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
+import com.ssquadteam.polls.model.PollStatus;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Future-based facade over a blocking {@link PollStorage}. Every call runs on a virtual thread,
+ * and at most {@code maxConcurrency} of them touch the backend at the same time. A tick thread waiting
+ * on one of its futures is reported to the watchdog like a blocking call.
+ */
+public class AsyncPollStorage {
+
+    private final PollStorage delegate;
+    private final Logger logger;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final WatchdogPollStorage watchdog;
+    private volatile VoterFilters voterFilters;
+
+    public AsyncPollStorage(PollStorage delegate, Logger logger, int maxConcurrency, WatchdogPollStorage watchdog) {
+        this.delegate = delegate;
+        this.logger = logger;
+        this.watchdog = watchdog;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("polls-io-", 0).factory());
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+    }
+
+    public PollStorage getDelegate() { return delegate; }
+
+    /** Storage calls waiting for one of the {@code maxConcurrency} slots. */
+    public int getQueuedCalls() { return permits.getQueueLength(); }
+
+    /**
+     * Answers "not voted" from {@code filters} where it can. Only valid while every vote goes through this facade,
+     * so it must stay off when other servers write to the same database.
+     */
+    public void enableVoterFilters(VoterFilters filters) { this.voterFilters = filters; }
+
+    public VoterFilters getVoterFilters() { return voterFilters; }
+
+    /** Fills the voter filters of these polls from storage; a poll's filter answers nothing until its fill is done. */
+    public CompletableFuture<Void> primeVoterFilters(Collection<UUID> pollIds) {
+        VoterFilters filters = voterFilters;
+        if (filters == null) return CompletableFuture.completedFuture(null);
+        List<CompletableFuture<?>> fills = new ArrayList<>();
+        for (UUID pollId : pollIds) {
+            // Installed before the load so votes cast meanwhile are recorded too
+            VoterFilters.Filter filter = filters.install(pollId);
+            if (filter == null) continue;
+            fills.add(supply("getVoters", () -> delegate.getVoters(pollId)).whenComplete((voters, e) -> {
+                // A filter without its stored voters would answer "not voted" for them, so a failed load drops it
+                if (e == null) filter.fill(voters);
+                else filters.remove(pollId);
+            }));
+        }
+        return CompletableFuture.allOf(fills.toArray(new CompletableFuture[0]));
+    }
+
+    /** Gives a poll that has not been saved yet, and so has no votes, a filter that answers right away. */
+    public void primeNewPoll(UUID pollId) {
+        VoterFilters filters = voterFilters;
+        if (filters == null) return;
+        VoterFilters.Filter filter = filters.install(pollId);
+        if (filter != null) filter.fill(List.of());
+    }
+
+    public void dropVoterFilter(UUID pollId) {
+        VoterFilters filters = voterFilters;
+        if (filters != null) filters.remove(pollId);
+    }
+
+    public CompletableFuture<Void> savePoll(Poll poll) { return run("savePoll", () -> delegate.savePoll(poll)); }
+
+    public CompletableFuture<Poll> getPoll(UUID id) { return supply("getPoll", () -> delegate.getPoll(id)); }
+
+    public CompletableFuture<Poll> findByIdOrCode(String idOrCode) { return supply("findByIdOrCode", () -> delegate.findByIdOrCode(idOrCode)); }
+
+    public CompletableFuture<List<Poll>> getAllPolls() { return supply("getAllPolls", delegate::getAllPolls); }
+
+    public CompletableFuture<PollPage> listPolls(PollStatus status, PollCursor after, int limit) {
+        return supply("listPolls", () -> delegate.listPolls(status, after, limit));
+    }
+
+    public CompletableFuture<Void> removePoll(UUID id) {
+        dropVoterFilter(id);
+        return run("removePoll", () -> delegate.removePoll(id));
+    }
+
+    public CompletableFuture<List<Poll>> findOpenPolls(long closesBefore) { return supply("findOpenPolls", () -> delegate.findOpenPolls(closesBefore)); }
+
+    public CompletableFuture<List<Poll>> closePolls(Collection<UUID> ids) { return supply("closePolls", () -> delegate.closePolls(ids)); }
+    public CompletableFuture<ClosedPolls> closePollsCounted(Collection<UUID> ids) { return supply("closePollsCounted", () -> delegate.closePollsCounted(ids)); }
+
+    public CompletableFuture<Boolean> saveVote(UUID pollId, UUID player, int optionIndex) {
+        VoterFilters filters = voterFilters;
+        // Added before the write starts, so the filter can never say "not voted" about a stored vote
+        if (filters != null) filters.recordVote(pollId, player);
+        return supply("saveVote", () -> delegate.saveVote(pollId, player, optionIndex));
+    }
+
+    public CompletableFuture<Boolean> hasVoted(UUID pollId, UUID player) {
+        // Read once, so the false positive is counted on the filter that answered
+        VoterFilters filters = voterFilters;
+        VoterFilters.Answer answer = filters == null ? VoterFilters.Answer.UNKNOWN : filters.check(pollId, player);
+        if (answer == VoterFilters.Answer.NOT_VOTED) return CompletableFuture.completedFuture(false);
+        return supply("hasVoted", () -> {
+            boolean voted = delegate.hasVoted(pollId, player);
+            if (!voted && answer == VoterFilters.Answer.MAYBE) filters.recordFalsePositive();
+            return voted;
+        });
+    }
+
+    public CompletableFuture<Integer> getPlayerVote(UUID pollId, UUID player) {
+        VoterFilters filters = voterFilters;
+        VoterFilters.Answer answer = filters == null ? VoterFilters.Answer.UNKNOWN : filters.check(pollId, player);
+        if (answer == VoterFilters.Answer.NOT_VOTED) return CompletableFuture.completedFuture(null);
+        return supply("getPlayerVote", () -> {
+            Integer vote = delegate.getPlayerVote(pollId, player);
+            if (vote == null && answer == VoterFilters.Answer.MAYBE) filters.recordFalsePositive();
+            return vote;
+        });
+    }
+
+    public CompletableFuture<List<UUID>> getVoters(UUID pollId) { return supply("getVoters", () -> delegate.getVoters(pollId)); }
+
+    public CompletableFuture<Map<Integer, Integer>> getVoteTally(UUID pollId) { return supply("getVoteTally", () -> delegate.getVoteTally(pollId)); }
+
+    public CompletableFuture<int[]> getVoteCounts(UUID pollId) { return supply("getVoteCounts", () -> delegate.getVoteCounts(pollId)); }
+
+    public CompletableFuture<Map<UUID, int[]>> getVoteCounts(Collection<UUID> pollIds) { return supply("getVoteCounts", () -> delegate.getVoteCounts(pollIds)); }
+
+    public CompletableFuture<Integer> repairTallies() { return supply("repairTallies", delegate::repairTallies); }
+
+    /**
+     * Handler for {@code exceptionally} that logs the failed action and completes with {@code null}.
+     */
+    public <T> Function<Throwable, T> failure(String action) {
+        return ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            logger.severe("Failed to " + action + ": " + cause.getMessage());
+            return null;
+        };
+    }
+
+    /**
+     * Stops accepting work and waits up to {@code timeoutMillis} for queued calls to finish.
+     */
+    public void close(long timeoutMillis) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                logger.warning("Storage calls still running after " + timeoutMillis + "ms, shutting down anyway");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private CompletableFuture<Void> run(String operation, Runnable op) {
+        return supply(operation, () -> { op.run(); return null; });
+    }
+
+    private <T> CompletableFuture<T> supply(String operation, Supplier<T> op) {
+        WatchedFuture<T> future = new WatchedFuture<>(watchdog, operation);
+        executor.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                future.complete(op.get());
+            } catch (Throwable t) {
+                // Wrapped the way supplyAsync does, so handlers see the same exceptions as before
+                future.completeExceptionally(t instanceof CompletionException ? t : new CompletionException(t));
+            } finally {
+                permits.release();
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,271 @@
+package com.ssquadteam.polls.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Small JDBC connection pool for the Postgres backend. Idle connections are validated before reuse,
+ * broken ones are replaced, and each connection keeps its own prepared statements between borrows.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T apply(PooledConnection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final Properties properties;
+    private final Logger logger;
+    private final int minSize;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long validateAfterIdleNanos;
+    private final int statementCacheSize;
+
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore borrowPermits;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private volatile boolean closed;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public ConnectionPool(String url, Properties properties, Logger logger, int minSize, int maxSize,
+                          long acquireTimeoutMillis, int validationTimeoutSeconds, long validateAfterIdleMillis, int statementCacheSize) {
+        this.url = url;
+        this.properties = properties;
+        this.logger = logger;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.validateAfterIdleNanos = TimeUnit.MILLISECONDS.toNanos(validateAfterIdleMillis);
+        this.statementCacheSize = statementCacheSize;
+        this.borrowPermits = new Semaphore(this.maxSize, true);
+    }
+
+    /**
+     * Opens the minimum number of connections up front so the first requests don't pay for the handshake.
+     */
+    public void start() throws SQLException {
+        for (int i = 0; i < minSize; i++) idle.offerLast(openConnection());
+    }
+
+    /**
+     * Runs {@code work} once on a borrowed connection. A dead connection is replaced but the failure is thrown, since
+     * the work may already have reached the database before the connection dropped.
+     */
+    public <T> T execute(SqlWork<T> work) throws SQLException {
+        return execute(work, false);
+    }
+
+    /**
+     * Like {@link #execute} but retries once on a fresh connection if the connection turns out to be dead. Only for
+     * reads and writes that leave the same state and return the same result when repeated.
+     */
+    public <T> T executeIdempotent(SqlWork<T> work) throws SQLException {
+        return execute(work, true);
+    }
+
+    private <T> T execute(SqlWork<T> work, boolean retry) throws SQLException {
+        for (int attempt = 0; ; attempt++) {
+            PooledConnection connection = acquire();
+            boolean broken = false;
+            try {
+                return work.apply(connection);
+            } catch (SQLException e) {
+                broken = isConnectionFailure(e) || !connection.isValid(validationTimeoutSeconds);
+                if (!broken || !retry || attempt > 0) throw e;
+                reconnects.increment();
+                logger.warning("Database connection failed (" + e.getMessage() + "), retrying on a new connection");
+            } finally {
+                release(connection, broken);
+            }
+        }
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        if (closed) throw new SQLNonTransientConnectionException("Connection pool is closed");
+        long start = System.nanoTime();
+        try {
+            if (!borrowPermits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException("Timed out after " + acquireTimeoutMillis + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        acquisitions.increment();
+        totalWaitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        try {
+            PooledConnection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (System.nanoTime() - connection.lastUsedNanos < validateAfterIdleNanos || connection.isValid(validationTimeoutSeconds)) {
+                    return connection;
+                }
+                reconnects.increment();
+                discard(connection);
+            }
+            return openConnection();
+        } catch (SQLException | RuntimeException e) {
+            borrowPermits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledConnection connection, boolean broken) {
+        try {
+            if (!broken && !closed && connection.reset()) {
+                connection.lastUsedNanos = System.nanoTime();
+                // LIFO keeps a few hot connections busy instead of cycling through all of them
+                idle.offerFirst(connection);
+            } else {
+                discard(connection);
+            }
+        } finally {
+            borrowPermits.release();
+        }
+    }
+
+    /**
+     * A connection outside the pool for a caller that keeps it open, such as a {@code LISTEN} session.
+     * The caller closes it.
+     */
+    public Connection openUnpooled() throws SQLException {
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, properties);
+        openConnections.incrementAndGet();
+        return new PooledConnection(raw, statementCacheSize);
+    }
+
+    private void discard(PooledConnection connection) {
+        openConnections.decrementAndGet();
+        connection.closeQuietly();
+    }
+
+    private static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof SQLRecoverableException || e instanceof SQLNonTransientConnectionException || e instanceof SQLTransientConnectionException) return true;
+        String state = e.getSQLState();
+        return state != null && state.startsWith("08");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) discard(connection);
+    }
+
+    public int getMaxSize() { return maxSize; }
+    public int getOpenConnections() { return openConnections.get(); }
+    public int getIdleConnections() { return idle.size(); }
+    public int getActiveConnections() { return maxSize - borrowPermits.availablePermits(); }
+    public int getWaitingThreads() { return borrowPermits.getQueueLength(); }
+    public double getUtilization() { return (double) getActiveConnections() / maxSize; }
+    public long getAcquisitions() { return acquisitions.sum(); }
+    public long getTimeouts() { return timeouts.sum(); }
+    public long getReconnects() { return reconnects.sum(); }
+    public double getAverageWaitMillis() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000.0 / count;
+    }
+    public double getMaxWaitMillis() { return maxWaitNanos.get() / 1_000_000.0; }
+
+    public String describe() {
+        return String.format("pool active=%d idle=%d open=%d max=%d waiting=%d utilization=%.0f%% avgWait=%.2fms maxWait=%.2fms timeouts=%d reconnects=%d",
+                getActiveConnections(), getIdleConnections(), getOpenConnections(), maxSize, getWaitingThreads(),
+                getUtilization() * 100, getAverageWaitMillis(), getMaxWaitMillis(), getTimeouts(), getReconnects());
+    }
+
+    /**
+     * A borrowed connection. Statements from {@link #prepare(String)} are owned by the connection and must not be closed.
+     */
+    public static final class PooledConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+        private long lastUsedNanos = System.nanoTime();
+
+        private PooledConnection(Connection connection, int cacheSize) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= cacheSize) return false;
+                    try { eldest.getValue().close(); } catch (SQLException ignored) {}
+                    return true;
+                }
+            };
+        }
+
+        public Connection connection() { return connection; }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            SqlTrace.note(sql);
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null || ps.isClosed()) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            } else {
+                ps.clearParameters();
+            }
+            return ps;
+        }
+
+        private boolean isValid(int timeoutSeconds) {
+            try {
+                return connection.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /** Rolls back anything a caller left open; returns false if the connection can't be reused. */
+        private boolean reset() {
+            try {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                return !connection.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private void closeQuietly() {
+            for (PreparedStatement ps : statements.values()) {
+                try { ps.close(); } catch (SQLException ignored) {}
+            }
+            statements.clear();
+            try { connection.close(); } catch (SQLException ignored) {}
+        }
+    }
+}
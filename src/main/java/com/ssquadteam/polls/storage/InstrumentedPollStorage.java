@@ -0,0 +1,318 @@
+package com.ssquadteam.polls.storage;
+
+import com.ssquadteam.polls.metrics.LatencyTimer;
+import com.ssquadteam.polls.metrics.MetricsRegistry;
+import com.ssquadteam.polls.model.ClosedPolls;
+import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
+import com.ssquadteam.polls.model.PollStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every call into the wrapped storage under {@code storage.<method>}, counting the ones that throw as errors;
+ * backends report a failed call by throwing {@link StorageException}. Each call is bracketed directly rather than
+ * through a lambda, so timing it allocates nothing.
+ */
+public class InstrumentedPollStorage implements PollStorage {
+
+    private final PollStorage delegate;
+    // Failed calls of every method together, for a single number to alert on
+    private final LongAdder errors;
+    private final LatencyTimer savePoll;
+    private final LatencyTimer getPoll;
+    private final LatencyTimer findByIdOrCode;
+    private final LatencyTimer getAllPolls;
+    private final LatencyTimer listPolls;
+    private final LatencyTimer removePoll;
+    private final LatencyTimer findOpenPolls;
+    private final LatencyTimer closePolls;
+    private final LatencyTimer closePollsCounted;
+    private final LatencyTimer completeCodes;
+    private final LatencyTimer saveVote;
+    private final LatencyTimer hasVoted;
+    private final LatencyTimer getPlayerVote;
+    private final LatencyTimer getVoters;
+    private final LatencyTimer getVoteTally;
+    private final LatencyTimer getVoteCounts;
+    private final LatencyTimer getVoteCountsBatch;
+    private final LatencyTimer repairTallies;
+
+    public InstrumentedPollStorage(PollStorage delegate, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.errors = metrics.counter("storage.errors");
+        this.savePoll = metrics.timer("storage.savePoll");
+        this.getPoll = metrics.timer("storage.getPoll");
+        this.findByIdOrCode = metrics.timer("storage.findByIdOrCode");
+        this.getAllPolls = metrics.timer("storage.getAllPolls");
+        this.listPolls = metrics.timer("storage.listPolls");
+        this.removePoll = metrics.timer("storage.removePoll");
+        this.findOpenPolls = metrics.timer("storage.findOpenPolls");
+        this.closePolls = metrics.timer("storage.closePolls");
+        this.closePollsCounted = metrics.timer("storage.closePollsCounted");
+        this.completeCodes = metrics.timer("storage.completeCodes");
+        this.saveVote = metrics.timer("storage.saveVote");
+        this.hasVoted = metrics.timer("storage.hasVoted");
+        this.getPlayerVote = metrics.timer("storage.getPlayerVote");
+        this.getVoters = metrics.timer("storage.getVoters");
+        this.getVoteTally = metrics.timer("storage.getVoteTally");
+        this.getVoteCounts = metrics.timer("storage.getVoteCounts");
+        this.getVoteCountsBatch = metrics.timer("storage.getVoteCounts.batch");
+        this.repairTallies = metrics.timer("storage.repairTallies");
+    }
+
+    public PollStorage delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void init() { delegate.init(); }
+
+    @Override
+    public void close() { delegate.close(); }
+
+    @Override
+    public void savePoll(Poll poll) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            delegate.savePoll(poll);
+            ok = true;
+        } finally {
+            stop(savePoll, start, ok);
+        }
+    }
+
+    @Override
+    public Poll getPoll(UUID id) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Poll result = delegate.getPoll(id);
+            ok = true;
+            return result;
+        } finally {
+            stop(getPoll, start, ok);
+        }
+    }
+
+    @Override
+    public Poll findByIdOrCode(String idOrCode) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Poll result = delegate.findByIdOrCode(idOrCode);
+            ok = true;
+            return result;
+        } finally {
+            stop(findByIdOrCode, start, ok);
+        }
+    }
+
+    @Override
+    public List<Poll> getAllPolls() {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<Poll> result = delegate.getAllPolls();
+            ok = true;
+            return result;
+        } finally {
+            stop(getAllPolls, start, ok);
+        }
+    }
+
+    @Override
+    public PollPage listPolls(PollStatus status, PollCursor after, int limit) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            PollPage result = delegate.listPolls(status, after, limit);
+            ok = true;
+            return result;
+        } finally {
+            stop(listPolls, start, ok);
+        }
+    }
+
+    @Override
+    public void removePoll(UUID id) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            delegate.removePoll(id);
+            ok = true;
+        } finally {
+            stop(removePoll, start, ok);
+        }
+    }
+
+    @Override
+    public List<Poll> findOpenPolls(long closesBefore) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<Poll> result = delegate.findOpenPolls(closesBefore);
+            ok = true;
+            return result;
+        } finally {
+            stop(findOpenPolls, start, ok);
+        }
+    }
+
+    @Override
+    public List<Poll> closePolls(Collection<UUID> ids) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<Poll> result = delegate.closePolls(ids);
+            ok = true;
+            return result;
+        } finally {
+            stop(closePolls, start, ok);
+        }
+    }
+
+    @Override
+    public ClosedPolls closePollsCounted(Collection<UUID> ids) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            ClosedPolls result = delegate.closePollsCounted(ids);
+            ok = true;
+            return result;
+        } finally {
+            stop(closePollsCounted, start, ok);
+        }
+    }
+
+    @Override
+    public List<String> completeCodes(String prefix, int limit) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<String> result = delegate.completeCodes(prefix, limit);
+            ok = true;
+            return result;
+        } finally {
+            stop(completeCodes, start, ok);
+        }
+    }
+
+    @Override
+    public boolean saveVote(UUID pollId, UUID player, int optionIndex) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            boolean result = delegate.saveVote(pollId, player, optionIndex);
+            ok = true;
+            return result;
+        } finally {
+            stop(saveVote, start, ok);
+        }
+    }
+
+    @Override
+    public boolean hasVoted(UUID pollId, UUID player) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            boolean result = delegate.hasVoted(pollId, player);
+            ok = true;
+            return result;
+        } finally {
+            stop(hasVoted, start, ok);
+        }
+    }
+
+    @Override
+    public Integer getPlayerVote(UUID pollId, UUID player) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Integer result = delegate.getPlayerVote(pollId, player);
+            ok = true;
+            return result;
+        } finally {
+            stop(getPlayerVote, start, ok);
+        }
+    }
+
+    @Override
+    public List<UUID> getVoters(UUID pollId) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            List<UUID> result = delegate.getVoters(pollId);
+            ok = true;
+            return result;
+        } finally {
+            stop(getVoters, start, ok);
+        }
+    }
+
+    @Override
+    public Map<Integer, Integer> getVoteTally(UUID pollId) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Map<Integer, Integer> result = delegate.getVoteTally(pollId);
+            ok = true;
+            return result;
+        } finally {
+            stop(getVoteTally, start, ok);
+        }
+    }
+
+    @Override
+    public int[] getVoteCounts(UUID pollId) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int[] result = delegate.getVoteCounts(pollId);
+            ok = true;
+            return result;
+        } finally {
+            stop(getVoteCounts, start, ok);
+        }
+    }
+
+    @Override
+    public Map<UUID, int[]> getVoteCounts(Collection<UUID> pollIds) {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            Map<UUID, int[]> result = delegate.getVoteCounts(pollIds);
+            ok = true;
+            return result;
+        } finally {
+            stop(getVoteCountsBatch, start, ok);
+        }
+    }
+
+    @Override
+    public int repairTallies() {
+        long start = System.nanoTime();
+        boolean ok = false;
+        try {
+            int result = delegate.repairTallies();
+            ok = true;
+            return result;
+        } finally {
+            stop(repairTallies, start, ok);
+        }
+    }
+
+    private void stop(LatencyTimer timer, long start, boolean ok) {
+        timer.recordSince(start);
+        if (!ok) {
+            timer.recordError();
+            errors.increment();
+        }
+    }
+}
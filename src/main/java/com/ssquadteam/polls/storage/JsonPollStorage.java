@@ -4,36 +4,122 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.model.ClosedPolls;
 import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
 import com.ssquadteam.polls.model.PollStatus;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 
+/**
+ * In-memory poll storage. Polls are persisted through a journal and periodic JSON snapshots; votes are appended to
+ * memory-mapped per-poll segment files. Reads never block; each poll's votes live in a
+ * {@link VoteTable}, and poll writes are serialized per poll through a small set of striped locks. Votes take no
+ * poll lock at all.
+ */
 public class JsonPollStorage implements PollStorage {
 
+    private static final int LOCK_STRIPES = 16;
+    private static final long SLOW_SNAPSHOT_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private record ClosingKey(long closesAt, UUID pollId) implements Comparable<ClosingKey> {
+        @Override
+        public int compareTo(ClosingKey other) {
+            int c = Long.compare(closesAt, other.closesAt);
+            return c != 0 ? c : pollId.compareTo(other.pollId);
+        }
+    }
+
     private final PollsPlugin plugin;
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Gson journalGson = new Gson();
     private File pollFile;
     private File voteFile;
+    private PollJournal journal;
+    private VoteSegmentStore voteStore;
+    private boolean legacyVotes;
+    private long compactThresholdBytes;
+    private long snapshotIntervalNanos;
+    private volatile long lastSnapshotNanos;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private final ScheduledThreadPoolExecutor writer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "polls-json-writer");
+        t.setDaemon(true);
+        return t;
+    });
 
-    private final Map<UUID, Poll> polls = new HashMap<>();
-    private final Map<UUID, Map<UUID, Integer>> votes = new HashMap<>();
-    private final Map<String, UUID> codeIndex = new HashMap<>();
+    private final Map<UUID, Poll> polls = new ConcurrentHashMap<>();
+    private final Map<UUID, VoteTable> votes = new ConcurrentHashMap<>();
+    private final PollCodeIndex codeIndex = new PollCodeIndex();
+    // Listing order (newest first), overall and per status
+    private final ConcurrentSkipListMap<PollCursor, Poll> byCreated = new ConcurrentSkipListMap<>();
+    private final Map<PollStatus, ConcurrentSkipListMap<PollCursor, Poll>> byStatus = new EnumMap<>(PollStatus.class);
+    // Open polls by closing time; the key is kept per poll because closesAt can change in place before a save
+    private final ConcurrentSkipListMap<ClosingKey, Poll> openByClosing = new ConcurrentSkipListMap<>();
+    private final Map<UUID, ClosingKey> closingKeys = new ConcurrentHashMap<>();
+    private final TallyCounters tallies = new TallyCounters();
+    private final Object[] pollLocks = new Object[LOCK_STRIPES];
 
-    public JsonPollStorage(PollsPlugin plugin) { this.plugin = plugin; }
+    public JsonPollStorage(PollsPlugin plugin) {
+        this.plugin = plugin;
+        for (int i = 0; i < pollLocks.length; i++) pollLocks[i] = new Object();
+        for (PollStatus status : PollStatus.values()) byStatus.put(status, new ConcurrentSkipListMap<>());
+    }
+
+    private Object lockFor(UUID pollId) {
+        return pollLocks[(pollId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
 
     @Override
     public void init() {
         if (!plugin.getDataFolder().exists()) plugin.getDataFolder().mkdirs();
         pollFile = new File(plugin.getDataFolder(), plugin.getConfig().getString("storage.json.file", "polls.json"));
         voteFile = new File(plugin.getDataFolder(), "votes.json");
-        load();
+        compactThresholdBytes = plugin.getConfig().getLong("storage.json.journal.compact-threshold-kb", 1024) * 1024;
+        long intervalSeconds = Math.max(1, plugin.getConfig().getLong("storage.json.snapshot.interval-seconds", 30));
+        snapshotIntervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        boolean fsync = plugin.getConfig().getBoolean("storage.json.journal.fsync", false);
+        journal = new PollJournal(new File(plugin.getDataFolder(), "journal.log"), journalGson, fsync);
+        voteStore = new VoteSegmentStore(new File(plugin.getDataFolder(), "votes"), plugin.getLogger(), fsync,
+                plugin.getConfig().getInt("storage.json.votes.max-mapped-segments", 256));
+        loadPolls();
+        loadVotes();
+        try {
+            int replayed = journal.replay(this::apply);
+            if (replayed > 0) {
+                plugin.getLogger().info("Replayed " + replayed + " journal records");
+                dirty.set(true);
+            }
+            journal.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open JSON journal: " + e.getMessage());
+        }
+        rebuildTallies();
+        if (legacyVotes) finishMigration();
+        lastSnapshotNanos = System.nanoTime();
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        writer.scheduleWithFixedDelay(() -> { if (dirty.get()) requestSnapshot(); }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
     }
 
-    private void load() {
+    private void loadPolls() {
         try {
             if (pollFile.exists()) {
                 try (Reader r = new FileReader(pollFile)) {
@@ -41,31 +127,17 @@ public class JsonPollStorage implements PollStorage {
                     Map<String, JsonPoll> map = gson.fromJson(r, type);
                     polls.clear();
                     codeIndex.clear();
+                    byCreated.clear();
+                    byStatus.values().forEach(Map::clear);
+                    openByClosing.clear();
+                    closingKeys.clear();
                     if (map != null) {
                         for (Map.Entry<String, JsonPoll> e : map.entrySet()) {
                             UUID id = UUID.fromString(e.getKey());
                             JsonPoll jp = e.getValue();
                             Poll p = new Poll(id, jp.question, jp.options, jp.createdAt, jp.closesAt, PollStatus.valueOf(jp.status));
                             p.setCode(jp.code);
-                            polls.put(id, p);
-                            if (jp.code != null && !jp.code.isBlank()) codeIndex.put(jp.code.toLowerCase(), id);
-                        }
-                    }
-                }
-            }
-            if (voteFile.exists()) {
-                try (Reader r = new FileReader(voteFile)) {
-                    Type type = new TypeToken<Map<String, Map<String, Integer>>>(){}.getType();
-                    Map<String, Map<String, Integer>> raw = gson.fromJson(r, type);
-                    votes.clear();
-                    if (raw != null) {
-                        for (Map.Entry<String, Map<String, Integer>> e : raw.entrySet()) {
-                            UUID pollId = UUID.fromString(e.getKey());
-                            Map<UUID, Integer> inner = new HashMap<>();
-                            for (Map.Entry<String, Integer> v : e.getValue().entrySet()) {
-                                inner.put(UUID.fromString(v.getKey()), v.getValue());
-                            }
-                            votes.put(pollId, inner);
+                            putPoll(p);
                         }
                     }
                 }
@@ -75,81 +147,429 @@ public class JsonPollStorage implements PollStorage {
         }
     }
 
-    private void persist() {
+    private void loadVotes() {
+        long start = System.nanoTime();
         try {
-            Map<String, JsonPoll> out = new HashMap<>();
-            for (Map.Entry<UUID, Poll> e : polls.entrySet()) {
-                Poll p = e.getValue();
-                out.put(e.getKey().toString(), new JsonPoll(p.getCode(), p.getQuestion(), p.getOptions(), p.getCreatedAtEpochSeconds(), p.getClosesAtEpochSeconds(), p.getStatus().name()));
+            int loaded = voteStore.load((pollId, msb, lsb, option) -> votesFor(pollId).putIfAbsent(new UUID(msb, lsb), option));
+            plugin.getLogger().info(String.format("Loaded %d votes in %.1fms", loaded, (System.nanoTime() - start) / 1_000_000.0));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to load vote segments: " + e.getMessage());
+        }
+        if (!voteFile.exists()) return;
+        // votes.json from before the binary format: copy anything the segments don't have yet
+        legacyVotes = true;
+        try (Reader r = new FileReader(voteFile)) {
+            Type type = new TypeToken<Map<String, Map<String, Integer>>>(){}.getType();
+            Map<String, Map<String, Integer>> raw = gson.fromJson(r, type);
+            if (raw != null) {
+                for (Map.Entry<String, Map<String, Integer>> e : raw.entrySet()) {
+                    UUID pollId = UUID.fromString(e.getKey());
+                    for (Map.Entry<String, Integer> v : e.getValue().entrySet()) importVote(pollId, UUID.fromString(v.getKey()), v.getValue());
+                }
             }
-            try (Writer w = new FileWriter(pollFile)) { gson.toJson(out, w); }
+        } catch (Exception e) {
+            plugin.getLogger().severe("Failed to migrate votes.json: " + e.getMessage());
+        }
+    }
+
+    private void importVote(UUID pollId, UUID player, int optionIndex) {
+        if (!votesFor(pollId).putIfAbsent(player, optionIndex)) return;
+        try {
+            voteStore.append(pollId, player, optionIndex, 0);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to migrate vote: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Once legacy votes are in the segments, rewrites the snapshot so the journal drops its vote records, then moves
+     * votes.json aside. A crash before that point simply repeats the migration.
+     */
+    private void finishMigration() {
+        voteStore.force();
+        if (!compact()) return;
+        if (!voteFile.exists()) return;
+        try {
+            Files.move(voteFile.toPath(), new File(voteFile.getPath() + ".migrated").toPath(), StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().info("Migrated votes.json to binary vote segments");
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to move votes.json aside: " + e.getMessage());
+        }
+    }
 
-            Map<String, Map<String, Integer>> vout = new HashMap<>();
-            for (Map.Entry<UUID, Map<UUID, Integer>> e : votes.entrySet()) {
-                Map<String, Integer> inner = new HashMap<>();
-                for (Map.Entry<UUID, Integer> v : e.getValue().entrySet()) inner.put(v.getKey().toString(), v.getValue());
-                vout.put(e.getKey().toString(), inner);
+    private void rebuildTallies() {
+        tallies.clear();
+        repairTallies();
+    }
+
+    private void apply(PollJournal.Record r) {
+        switch (r.op) {
+            case PollJournal.OP_POLL -> {
+                Poll p = new Poll(UUID.fromString(r.id), r.question, r.options, r.createdAt, r.closesAt, PollStatus.valueOf(r.status));
+                p.setCode(r.code);
+                putPoll(p);
+            }
+            case PollJournal.OP_REMOVE -> {
+                UUID id = UUID.fromString(r.id);
+                dropPoll(id);
+                voteStore.delete(id);
             }
-            try (Writer w = new FileWriter(voteFile)) { gson.toJson(vout, w); }
+            case PollJournal.OP_VOTE -> {
+                // Votes were journaled before they moved to segment files
+                legacyVotes = true;
+                importVote(UUID.fromString(r.id), UUID.fromString(r.player), r.option);
+            }
+            default -> plugin.getLogger().warning("Skipping unknown journal record: " + r.op);
+        }
+    }
+
+    private void append(PollJournal.Record record) {
+        dirty.set(true);
+        try {
+            journal.append(record);
+        } catch (IOException e) {
+            // The change is already in memory, so have a snapshot persist it soon
+            requestSnapshot();
+            throw new StorageException("Failed to append to JSON journal", e);
+        }
+        if (journal.size() >= compactThresholdBytes) requestSnapshot();
+    }
+
+    /**
+     * Schedules a snapshot on the writer thread, no sooner than one interval after the previous one, so a burst of
+     * mutations collapses into a single write.
+     */
+    private void requestSnapshot() {
+        if (!snapshotScheduled.compareAndSet(false, true)) return;
+        long wait = Math.max(0, lastSnapshotNanos + snapshotIntervalNanos - System.nanoTime());
+        try {
+            writer.schedule(this::writeSnapshot, wait, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            snapshotScheduled.set(false);
+        }
+    }
+
+    private void writeSnapshot() {
+        snapshotScheduled.set(false);
+        if (!dirty.getAndSet(false)) return;
+        if (!compact()) dirty.set(true);
+        lastSnapshotNanos = System.nanoTime();
+    }
+
+    /**
+     * Folds the journal into a fresh snapshot. The state is captured after the journal is rotated, and every mutation
+     * reaches the maps before the journal, so the snapshot covers the rotated file. Mutations racing the capture may
+     * also land in the new journal; replaying them is idempotent.
+     */
+    private boolean compact() {
+        try {
+            journal.rotate();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to rotate JSON journal: " + e.getMessage());
+            return false;
+        }
+        Map<String, JsonPoll> pollOut = snapshotPolls();
+        long start = System.nanoTime();
+        long bytes;
+        try {
+            bytes = writeAtomically(pollFile, pollOut);
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save JSON storage: " + e.getMessage());
+            return false;
+        }
+        long tookNanos = System.nanoTime() - start;
+        // Routine every snapshot interval; only worth a line at INFO when it was slow
+        Level level = tookNanos >= SLOW_SNAPSHOT_NANOS ? Level.INFO : Level.FINE;
+        if (plugin.getLogger().isLoggable(level)) {
+            plugin.getLogger().log(level, String.format("Wrote JSON snapshot: %d polls, %d bytes in %.1fms",
+                    pollOut.size(), bytes, tookNanos / 1_000_000.0));
+        }
+        try {
+            journal.discardRotated();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to delete compacted journal: " + e.getMessage());
+        }
+        return true;
+    }
+
+    private Map<String, JsonPoll> snapshotPolls() {
+        Map<String, JsonPoll> out = new HashMap<>();
+        for (Map.Entry<UUID, Poll> e : polls.entrySet()) {
+            Poll p = e.getValue();
+            out.put(e.getKey().toString(), new JsonPoll(p.getCode(), p.getQuestion(), p.getOptions(), p.getCreatedAtEpochSeconds(), p.getClosesAtEpochSeconds(), p.getStatus().name()));
+        }
+        return out;
+    }
+
+    /**
+     * Writes to a temp file, fsyncs it and renames it over the target, so a crash leaves either the old or the new
+     * file but never a half-written one. Returns the number of bytes written.
+     */
+    private long writeAtomically(File target, Object data) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            gson.toJson(data, w);
+            w.flush();
+            out.getChannel().force(true);
+        }
+        long bytes = tmp.length();
+        try {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+        return bytes;
+    }
+
+    /** Makes a rename in {@code dir} durable; without it a power loss can bring back the old file. */
+    private void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms, Windows among them, can't open a directory for syncing
+            plugin.getLogger().fine("Could not sync " + dir + ": " + e.getMessage());
         }
     }
 
     @Override
-    public void close() { persist(); }
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Final flush regardless of the interval
+        if (dirty.getAndSet(false) || journal.size() > 0) compact();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to close JSON journal: " + e.getMessage());
+        }
+        voteStore.close();
+    }
 
     @Override
     public void savePoll(Poll poll) {
-        polls.put(poll.getId(), poll);
-        if (poll.getCode() != null) codeIndex.put(poll.getCode().toLowerCase(), poll.getId());
-        persist();
+        synchronized (lockFor(poll.getId())) {
+            putPoll(poll);
+            appendPoll(poll);
+        }
+    }
+
+    private void appendPoll(Poll poll) {
+        PollJournal.Record r = new PollJournal.Record();
+        r.op = PollJournal.OP_POLL;
+        r.id = poll.getId().toString();
+        r.code = poll.getCode();
+        r.question = poll.getQuestion();
+        r.options = poll.getOptions();
+        r.createdAt = poll.getCreatedAtEpochSeconds();
+        r.closesAt = poll.getClosesAtEpochSeconds();
+        r.status = poll.getStatus().name();
+        append(r);
+    }
+
+    private void putPoll(Poll poll) {
+        Poll previous = polls.put(poll.getId(), poll);
+        codeIndex.put(poll.getId(), poll.getCode());
+        if (previous != null) unlist(previous);
+        PollCursor key = PollCursor.of(poll);
+        byCreated.put(key, poll);
+        byStatus.get(poll.getStatus()).put(key, poll);
+        if (poll.getStatus() == PollStatus.OPEN) {
+            ClosingKey closing = new ClosingKey(poll.getClosesAtEpochSeconds(), poll.getId());
+            closingKeys.put(poll.getId(), closing);
+            openByClosing.put(closing, poll);
+        }
+    }
+
+    private void unlist(Poll poll) {
+        // The status may have been changed in place before the save, so check every status
+        PollCursor key = PollCursor.of(poll);
+        byCreated.remove(key);
+        for (ConcurrentSkipListMap<PollCursor, Poll> list : byStatus.values()) list.remove(key);
+        ClosingKey closing = closingKeys.remove(poll.getId());
+        if (closing != null) openByClosing.remove(closing);
     }
 
     @Override
     public Poll getPoll(UUID id) { return polls.get(id); }
 
+    @Override
+    public List<String> completeCodes(String prefix, int limit) { return codeIndex.complete(prefix, limit); }
+
     @Override
     public List<Poll> getAllPolls() {
-        List<Poll> list = new ArrayList<>(polls.values());
-        list.sort(Comparator.comparingLong(Poll::getCreatedAtEpochSeconds).reversed());
-        return list;
+        return new ArrayList<>(byCreated.values());
+    }
+
+    @Override
+    public PollPage listPolls(PollStatus status, PollCursor after, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        NavigableMap<PollCursor, Poll> source = status == null ? byCreated : byStatus.get(status);
+        if (after != null) source = source.tailMap(after, false);
+        List<Poll> page = new ArrayList<>(size);
+        PollCursor next = null;
+        for (Poll poll : source.values()) {
+            if (status != null && poll.getStatus() != status) continue;
+            if (page.size() == size) {
+                next = PollCursor.of(page.get(size - 1));
+                break;
+            }
+            page.add(poll);
+        }
+        return new PollPage(page, next);
+    }
+
+    @Override
+    public List<Poll> findOpenPolls(long closesBefore) {
+        List<Poll> out = new ArrayList<>();
+        for (Map.Entry<ClosingKey, Poll> e : openByClosing.entrySet()) {
+            if (e.getKey().closesAt() > closesBefore) break;
+            if (e.getValue().getStatus() == PollStatus.OPEN) out.add(e.getValue());
+        }
+        return out;
+    }
+
+    @Override
+    public List<Poll> closePolls(Collection<UUID> ids) {
+        List<Poll> closed = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            synchronized (lockFor(id)) {
+                Poll poll = polls.get(id);
+                if (poll == null || poll.getStatus() != PollStatus.OPEN) continue;
+                poll.setStatus(PollStatus.CLOSED);
+                putPoll(poll);
+                appendPoll(poll);
+                // Its votes stay in the vote table; the file only needs mapping again if one still arrives
+                voteStore.release(id);
+                closed.add(poll);
+            }
+        }
+        return closed;
+    }
+
+    // A single server owns every vote in the JSON backend, so its counters are the stored result
+    @Override
+    public ClosedPolls closePollsCounted(Collection<UUID> ids) {
+        List<Poll> closed = closePolls(ids);
+        List<UUID> closedIds = new ArrayList<>(closed.size());
+        for (Poll poll : closed) closedIds.add(poll.getId());
+        return new ClosedPolls(closed, closedIds.isEmpty() ? new HashMap<>() : getVoteCounts(closedIds));
     }
 
     @Override
     public void removePoll(UUID id) {
-        polls.remove(id);
+        synchronized (lockFor(id)) {
+            dropPoll(id);
+            PollJournal.Record r = new PollJournal.Record();
+            r.op = PollJournal.OP_REMOVE;
+            r.id = id.toString();
+            append(r);
+            voteStore.delete(id);
+        }
+    }
+
+    private void dropPoll(UUID id) {
+        Poll removed = polls.remove(id);
+        if (removed != null) unlist(removed);
         votes.remove(id);
-        codeIndex.values().removeIf(u -> u.equals(id));
-        persist();
+        tallies.forget(id);
+        codeIndex.remove(id);
+    }
+
+    private VoteTable votesFor(UUID pollId) {
+        return votes.computeIfAbsent(pollId, k -> new VoteTable());
     }
 
     @Override
-    public void saveVote(UUID pollId, UUID player, int optionIndex) {
-        votes.computeIfAbsent(pollId, k -> new HashMap<>()).putIfAbsent(player, optionIndex);
-        persist();
+    public boolean saveVote(UUID pollId, UUID player, int optionIndex) {
+        // No poll lock: the vote table's insert decides between racing clicks and each segment orders its own appends,
+        // so a slow fsync only holds up votes in the same poll. Like the Postgres insert, a vote for a poll that no
+        // longer exists fails
+        if (!polls.containsKey(pollId)) throw pollGone(pollId);
+        VoteTable table = votesFor(pollId);
+        // putIfAbsent is the only gate: of two racing clicks exactly one wins
+        if (!table.putIfAbsent(player, optionIndex)) return false;
+        tallies.increment(pollId, optionIndex);
+        try {
+            voteStore.append(pollId, player, optionIndex, Instant.now().getEpochSecond());
+        } catch (IOException e) {
+            if (!polls.containsKey(pollId)) throw forgetRemoved(pollId, table);
+            // Still counted in memory, but gone after a restart; the caller is told the write failed
+            throw new StorageException("Failed to save vote", e);
+        }
+        // Removed while the vote went in: dropPoll may have run before this table or count existed
+        if (!polls.containsKey(pollId)) throw forgetRemoved(pollId, table);
+        return true;
+    }
+
+    private StorageException forgetRemoved(UUID pollId, VoteTable table) {
+        votes.remove(pollId, table);
+        tallies.forget(pollId);
+        return pollGone(pollId);
+    }
+
+    private static StorageException pollGone(UUID pollId) {
+        return new StorageException("Failed to save vote: poll " + pollId + " no longer exists");
     }
 
     @Override
     public boolean hasVoted(UUID pollId, UUID player) {
-        Map<UUID, Integer> inner = votes.get(pollId);
-        return inner != null && inner.containsKey(player);
+        VoteTable table = votes.get(pollId);
+        return table != null && table.contains(player);
+    }
+
+    @Override
+    public List<UUID> getVoters(UUID pollId) {
+        VoteTable table = votes.get(pollId);
+        if (table == null) return List.of();
+        List<UUID> voters = new ArrayList<>(table.size());
+        table.forEach((msb, lsb, option) -> voters.add(new UUID(msb, lsb)));
+        return voters;
     }
 
     @Override
     public Map<Integer, Integer> getVoteTally(UUID pollId) {
-        Map<Integer, Integer> tally = new HashMap<>();
-        Map<UUID, Integer> inner = votes.get(pollId);
-        if (inner != null) {
-            for (Integer v : inner.values()) tally.merge(v, 1, Integer::sum);
+        return TallyCounters.toTally(getVoteCounts(pollId));
+    }
+
+    @Override
+    public int[] getVoteCounts(UUID pollId) {
+        int[] counts = tallies.snapshot(pollId);
+        return counts != null ? counts : TallyCounters.NO_VOTES;
+    }
+
+    @Override
+    public Map<UUID, int[]> getVoteCounts(Collection<UUID> pollIds) {
+        Map<UUID, int[]> result = new HashMap<>();
+        for (UUID pollId : pollIds) result.put(pollId, getVoteCounts(pollId));
+        return result;
+    }
+
+    /** Tallies here are always counted from the vote tables; this recounts them one poll at a time. */
+    @Override
+    public int repairTallies() {
+        int repaired = 0;
+        for (Map.Entry<UUID, VoteTable> e : votes.entrySet()) {
+            int[] counts = new int[Poll.MAX_OPTIONS];
+            e.getValue().forEach((msb, lsb, option) -> {
+                if (option >= 0 && option < counts.length) counts[option]++;
+            });
+            tallies.set(e.getKey(), counts);
+            repaired++;
         }
-        return tally;
+        return repaired;
     }
 
     @Override
     public Integer getPlayerVote(UUID pollId, UUID player) {
-        Map<UUID, Integer> inner = votes.get(pollId);
-        return inner == null ? null : inner.get(player);
+        VoteTable table = votes.get(pollId);
+        int option = table == null ? -1 : table.get(player);
+        return option < 0 ? null : option;
     }
 
     @Override
@@ -158,7 +578,7 @@ public class JsonPollStorage implements PollStorage {
             UUID id = UUID.fromString(idOrCode);
             return getPoll(id);
         } catch (Exception ignored) {}
-        UUID mapped = codeIndex.get(idOrCode.toLowerCase());
+        UUID mapped = codeIndex.find(idOrCode);
         if (mapped != null) return getPoll(mapped);
         return null;
     }
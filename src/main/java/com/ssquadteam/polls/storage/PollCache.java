@@ -0,0 +1,157 @@
+package com.ssquadteam.polls.storage;
+
+import com.ssquadteam.polls.model.Poll;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Bounded read-through cache for the Postgres backend: polls by id, code to id lookups and per-player vote checks.
+ * Entries are evicted least-recently-used once a section is full and expire after a fixed TTL. A size of zero turns
+ * a section off.
+ * <p>
+ * Polls are stored and handed out as copies, so editing a returned poll never changes the cached one. A poll read
+ * from the database is cached only if no poll was invalidated since the read started, so a read that raced a write
+ * can't put the old row back after the writer invalidated it.
+ */
+public class PollCache {
+
+    private static final int NO_VOTE = -1;
+
+    private record VoteKey(UUID pollId, UUID player) {}
+
+    private final Section<UUID, Poll> polls;
+    private final Section<String, UUID> codes;
+    private final Section<VoteKey, Integer> votes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final AtomicLong pollInvalidations = new AtomicLong();
+
+    public PollCache(int maxPolls, int maxVotes, long ttlMillis) {
+        long ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.polls = new Section<>(maxPolls, ttlNanos);
+        this.codes = new Section<>(maxPolls, ttlNanos);
+        this.votes = new Section<>(maxVotes, ttlNanos);
+    }
+
+    public Poll getPoll(UUID id) {
+        Poll poll = count(polls.get(id));
+        return poll == null ? null : poll.copy();
+    }
+
+    public UUID getPollId(String code) { return count(codes.get(code.toLowerCase())); }
+
+    /** Taken before a database read and handed to {@link #putPoll} with its result. */
+    public long pollVersion() { return pollInvalidations.get(); }
+
+    /** Caches a copy of {@code poll} unless a poll was invalidated after {@code version} was taken. */
+    public synchronized void putPoll(Poll poll, long version) {
+        if (pollInvalidations.get() != version) return;
+        polls.put(poll.getId(), poll.copy());
+        if (poll.getCode() != null) codes.put(poll.getCode().toLowerCase(), poll.getId());
+    }
+
+    /**
+     * Drops the poll and every code that pointed at it, so a renamed code can't resolve to the old poll. Writers call
+     * this after their change is committed.
+     */
+    public synchronized void invalidatePoll(UUID id) {
+        pollInvalidations.incrementAndGet();
+        polls.remove(id);
+        codes.removeValue(id);
+    }
+
+    /** Returns the cached option, -1 if the player is known not to have voted, or null if unknown. */
+    public Integer getVote(UUID pollId, UUID player) { return count(votes.get(new VoteKey(pollId, player))); }
+
+    public void putVote(UUID pollId, UUID player, Integer optionIndex) {
+        // A "not voted" read must never overwrite a vote that was recorded while the query ran
+        if (optionIndex == null) votes.putIfAbsent(new VoteKey(pollId, player), NO_VOTE);
+        else votes.put(new VoteKey(pollId, player), optionIndex);
+    }
+
+    public void invalidateVotes(UUID pollId) {
+        votes.removeKeys(key -> key.pollId().equals(pollId));
+    }
+
+    public synchronized void clear() {
+        pollInvalidations.incrementAndGet();
+        polls.clear();
+        codes.clear();
+        votes.clear();
+    }
+
+    private <T> T count(T value) {
+        if (value == null) misses.increment(); else hits.increment();
+        return value;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public double getHitRate() {
+        long h = hits.sum(), total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public String describe() {
+        return String.format("cache polls=%d codes=%d votes=%d hits=%d misses=%d hitRate=%.0f%%",
+                polls.size(), codes.size(), votes.size(), getHits(), getMisses(), getHitRate() * 100);
+    }
+
+    private static final class Section<K, V> {
+        private record Entry<V>(V value, long expiresAt) {}
+
+        private final int maxSize;
+        private final long ttlNanos;
+        private final LinkedHashMap<K, Entry<V>> map;
+
+        Section(int maxSize, long ttlNanos) {
+            this.maxSize = Math.max(0, maxSize);
+            this.ttlNanos = ttlNanos;
+            this.map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    return size() > Section.this.maxSize;
+                }
+            };
+        }
+
+        synchronized V get(K key) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) return null;
+            if (System.nanoTime() - entry.expiresAt() > 0) {
+                map.remove(key);
+                return null;
+            }
+            return entry.value();
+        }
+
+        synchronized void put(K key, V value) {
+            if (maxSize == 0) return;
+            map.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        }
+
+        synchronized void putIfAbsent(K key, V value) {
+            if (get(key) == null) put(key, value);
+        }
+
+        synchronized void remove(K key) { map.remove(key); }
+
+        synchronized void removeValue(V value) {
+            map.values().removeIf(entry -> entry.value().equals(value));
+        }
+
+        synchronized void removeKeys(Predicate<K> filter) {
+            map.keySet().removeIf(filter);
+        }
+
+        synchronized int size() { return map.size(); }
+
+        synchronized void clear() { map.clear(); }
+    }
+}
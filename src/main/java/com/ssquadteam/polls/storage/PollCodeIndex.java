@@ -0,0 +1,71 @@
+package com.ssquadteam.polls.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Sorted, case-insensitive index of poll codes. Prefix lookups walk only the matching range of the skip list, so
+ * they cost O(log n + results) and never block writers; writes keep the code of each poll current on save and remove.
+ */
+public class PollCodeIndex {
+
+    private record Entry(UUID id, String code) {}
+
+    private final ConcurrentSkipListMap<String, Entry> byCode = new ConcurrentSkipListMap<>();
+    private final Map<UUID, String> codeById = new ConcurrentHashMap<>();
+
+    /** Points {@code code} at the poll, dropping the poll's previous code if it changed. */
+    public synchronized void put(UUID id, String code) {
+        if (code == null || code.isBlank()) {
+            remove(id);
+            return;
+        }
+        String key = key(code);
+        String previous = codeById.put(id, key);
+        if (previous != null && !previous.equals(key)) removeIfOwned(previous, id);
+        byCode.put(key, new Entry(id, code));
+    }
+
+    public synchronized void remove(UUID id) {
+        String previous = codeById.remove(id);
+        if (previous != null) removeIfOwned(previous, id);
+    }
+
+    private void removeIfOwned(String key, UUID id) {
+        Entry entry = byCode.get(key);
+        if (entry != null && entry.id().equals(id)) byCode.remove(key);
+    }
+
+    public synchronized void clear() {
+        byCode.clear();
+        codeById.clear();
+    }
+
+    public UUID find(String code) {
+        Entry entry = byCode.get(key(code));
+        return entry == null ? null : entry.id();
+    }
+
+    /** Codes starting with {@code prefix}, ignoring case, in alphabetical order and at most {@code limit} of them. */
+    public List<String> complete(String prefix, int limit) {
+        List<String> out = new ArrayList<>(Math.min(limit, 16));
+        if (limit <= 0) return out;
+        String from = key(prefix);
+        for (Map.Entry<String, Entry> e : byCode.tailMap(from, true).entrySet()) {
+            if (!e.getKey().startsWith(from) || out.size() >= limit) break;
+            out.add(e.getValue().code());
+        }
+        return out;
+    }
+
+    public int size() { return byCode.size(); }
+
+    private static String key(String code) {
+        return code.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,129 @@
+package com.ssquadteam.polls.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of poll mutations, one compact JSON record per line. Replayed on top of the last snapshot at
+ * startup and folded into a new snapshot by compaction.
+ */
+class PollJournal {
+
+    static final String OP_POLL = "poll";
+    static final String OP_REMOVE = "remove";
+    /** Only written by older versions; votes now go to {@link VoteSegmentStore}. */
+    static final String OP_VOTE = "vote";
+
+    static class Record {
+        String op;
+        String id;
+        String code;
+        String question;
+        List<String> options;
+        long createdAt;
+        long closesAt;
+        String status;
+        String player;
+        int option;
+    }
+
+    private final File file;
+    private final File rotatedFile;
+    private final Gson gson;
+    private final boolean fsync;
+    private FileOutputStream out;
+    private Writer writer;
+    private long size;
+
+    PollJournal(File file, Gson gson, boolean fsync) {
+        this.file = file;
+        this.rotatedFile = new File(file.getPath() + ".old");
+        this.gson = gson;
+        this.fsync = fsync;
+    }
+
+    synchronized void open() throws IOException {
+        out = new FileOutputStream(file, true);
+        writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        size = file.length();
+    }
+
+    synchronized void append(Record record) throws IOException {
+        String line = gson.toJson(record);
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+        if (fsync) out.getChannel().force(false);
+        size += line.length() + 1;
+    }
+
+    synchronized long size() { return size; }
+
+    /**
+     * Moves the current journal aside and starts an empty one. The rotated file stays on disk until the snapshot that
+     * covers it has been written, so a crash mid-compaction replays it again.
+     */
+    synchronized void rotate() throws IOException {
+        writer.close();
+        if (rotatedFile.exists()) {
+            // The last snapshot failed, so the rotated records are not covered yet; keep them and add ours
+            try (FileOutputStream rotated = new FileOutputStream(rotatedFile, true)) {
+                Files.copy(file.toPath(), rotated);
+            }
+            Files.delete(file.toPath());
+        } else {
+            Files.move(file.toPath(), rotatedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedFile.toPath());
+    }
+
+    synchronized void close() throws IOException {
+        if (writer != null) writer.close();
+    }
+
+    /**
+     * Replays the rotated journal (left behind by an interrupted compaction) and then the current one.
+     * Returns the number of records applied; a torn last line from a crash is skipped.
+     */
+    int replay(Consumer<Record> consumer) throws IOException {
+        return replay(rotatedFile, consumer) + replay(file, consumer);
+    }
+
+    private int replay(File source, Consumer<Record> consumer) throws IOException {
+        if (!source.exists()) return 0;
+        int applied = 0;
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                Record record;
+                try {
+                    record = gson.fromJson(line, Record.class);
+                } catch (JsonParseException e) {
+                    continue;
+                }
+                if (record == null || record.op == null) continue;
+                consumer.accept(record);
+                applied++;
+            }
+        }
+        return applied;
+    }
+}
@@ -1,12 +1,22 @@
 package com.ssquadteam.polls.storage;
 
+import com.ssquadteam.polls.model.ClosedPolls;
 import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
+import com.ssquadteam.polls.model.PollStatus;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Storage backend for polls and votes. A call that cannot be completed throws {@link StorageException}.
+ */
 public interface PollStorage {
+    int MAX_PAGE_SIZE = 100;
+
     void init();
     void close();
 
@@ -14,10 +24,53 @@ public interface PollStorage {
     Poll getPoll(UUID id);
     Poll findByIdOrCode(String idOrCode);
     List<Poll> getAllPolls();
+
+    /**
+     * One page of polls, newest first. {@code status} null lists every poll, {@code after} null starts at the newest,
+     * and {@code limit} is capped at {@link #MAX_PAGE_SIZE}.
+     */
+    PollPage listPolls(PollStatus status, PollCursor after, int limit);
     void removePoll(UUID id);
 
-    void saveVote(UUID pollId, UUID player, int optionIndex);
+    /** Open polls closing at or before {@code closesBefore}, soonest first. */
+    List<Poll> findOpenPolls(long closesBefore);
+
+    /** Closes the given polls in one write and returns the ones that were still open, now marked closed. */
+    List<Poll> closePolls(Collection<UUID> ids);
+
+    /**
+     * {@link #closePolls} together with the final vote counts of the polls it closed, read from what the backend has
+     * stored rather than from counters kept in memory, so every server can announce the same result.
+     */
+    ClosedPolls closePollsCounted(Collection<UUID> ids);
+
+    /**
+     * Poll codes starting with {@code prefix}, ignoring case, at most {@code limit} of them. Answered from memory,
+     * so it is safe to call on the main thread for tab completion.
+     */
+    List<String> completeCodes(String prefix, int limit);
+
+    /**
+     * Returns true if the vote was recorded and false if the player had already voted. Throws
+     * {@link StorageException} if the vote could not be stored, including when the poll no longer exists.
+     */
+    boolean saveVote(UUID pollId, UUID player, int optionIndex);
     boolean hasVoted(UUID pollId, UUID player);
     Integer getPlayerVote(UUID pollId, UUID player);
+
+    /** Every player with a vote in the poll, including votes not yet written out. */
+    List<UUID> getVoters(UUID pollId);
     Map<Integer, Integer> getVoteTally(UUID pollId);
-}
\ No newline at end of file
+
+    /**
+     * Vote count per option index, {@link Poll#MAX_OPTIONS} slots long. The array may be shared with other callers
+     * and must not be modified.
+     */
+    int[] getVoteCounts(UUID pollId);
+
+    /** {@link #getVoteCounts(UUID)} for several polls at once, keyed by poll id. */
+    Map<UUID, int[]> getVoteCounts(Collection<UUID> pollIds);
+
+    /** Recounts every poll's tally from its stored votes. Returns the number of polls with votes. */
+    int repairTallies();
+}
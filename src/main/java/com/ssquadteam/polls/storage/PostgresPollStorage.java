@@ -1,21 +1,53 @@
 package com.ssquadteam.polls.storage;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.ssquadteam.polls.PollsPlugin;
+import com.ssquadteam.polls.cluster.ClusterEvent;
+import com.ssquadteam.polls.cluster.ClusterEventBus;
+import com.ssquadteam.polls.model.ClosedPolls;
 import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
 import com.ssquadteam.polls.model.PollStatus;
+import com.tcoded.folialib.wrapper.task.WrappedTask;
 
-import java.lang.reflect.Type;
 import java.sql.*;
 import java.time.Instant;
 import java.util.*;
 
 public class PostgresPollStorage implements PollStorage {
 
+    private static final String POLL_COLUMNS = "id, code, question, options, created_at, closes_at, status";
+    private static final String SAVE_POLL = "INSERT INTO polls (" + POLL_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (id) DO UPDATE SET code=EXCLUDED.code, question=EXCLUDED.question, options=EXCLUDED.options, created_at=EXCLUDED.created_at, closes_at=EXCLUDED.closes_at, status=EXCLUDED.status";
+    private static final String GET_POLL = "SELECT " + POLL_COLUMNS + " FROM polls WHERE id = ?";
+    private static final String FIND_BY_CODE = "SELECT " + POLL_COLUMNS + " FROM polls WHERE lower(code) = lower(?)";
+    private static final String ALL_CODES = "SELECT id, code FROM polls WHERE code IS NOT NULL";
+    private static final String ALL_POLLS = "SELECT " + POLL_COLUMNS + " FROM polls ORDER BY created_at DESC";
+    // Indexed by (status filter ? 1 : 0) + (cursor ? 2 : 0)
+    private static final String[] LIST_POLLS = { listPollsSql(false, false), listPollsSql(true, false), listPollsSql(false, true), listPollsSql(true, true) };
+    private static final String OPEN_POLLS = "SELECT " + POLL_COLUMNS + " FROM polls WHERE status = 'OPEN' AND closes_at <= ? ORDER BY closes_at";
+    private static final String CLOSE_POLLS = "UPDATE polls SET status = 'CLOSED' WHERE id = ANY(?) AND status = 'OPEN' RETURNING " + POLL_COLUMNS;
+    private static final String DELETE_POLL = "DELETE FROM polls WHERE id = ?";
+    // The tally row only changes if the vote row was actually inserted
+    private static final String SAVE_VOTE = "WITH inserted AS (" +
+            "INSERT INTO votes (poll_id, player_uuid, option_index, voted_at) VALUES (?, ?, ?, ? ) " +
+            "ON CONFLICT (poll_id, player_uuid) DO NOTHING RETURNING poll_id, option_index) " +
+            "INSERT INTO poll_tallies (poll_id, option_index, count) SELECT poll_id, option_index, 1 FROM inserted " +
+            "ON CONFLICT (poll_id, option_index) DO UPDATE SET count = poll_tallies.count + 1";
+    private static final String PLAYER_VOTE = "SELECT option_index FROM votes WHERE poll_id = ? AND player_uuid = ?";
+    private static final String VOTERS = "SELECT player_uuid FROM votes WHERE poll_id = ?";
+    private static final String TALLY = "SELECT option_index, count FROM poll_tallies WHERE poll_id = ?";
+    private static final long CLOSE_FLUSH_TIMEOUT_MS = 5000;
+    private static final String TALLY_MANY = "SELECT poll_id, option_index, count FROM poll_tallies WHERE poll_id = ANY(?)";
+
     private final PollsPlugin plugin;
-    private Connection connection;
-    private final Gson gson = new Gson();
+    private ConnectionPool pool;
+    private VoteWriteBehind writeBehind;
+    private final TallyCounters tallies = new TallyCounters();
+    private PollCache cache;
+    private final PollCodeIndex codeIndex = new PollCodeIndex();
+    private WrappedTask statsTask;
+    private volatile ClusterEventBus cluster;
 
     public PostgresPollStorage(PollsPlugin plugin) {
         this.plugin = plugin;
@@ -43,78 +75,149 @@ public class PostgresPollStorage implements PollStorage {
             props.setProperty("user", user);
             props.setProperty("password", password);
 
-            connection = DriverManager.getConnection(url, props);
-
-            try (Statement st = connection.createStatement()) {
-                st.executeUpdate("CREATE TABLE IF NOT EXISTS polls (" +
-                        "id UUID PRIMARY KEY, " +
-                        "code TEXT UNIQUE, " +
-                        "question TEXT NOT NULL, " +
-                        "options_json TEXT NOT NULL, " +
-                        "created_at BIGINT NOT NULL, " +
-                        "closes_at BIGINT NOT NULL, " +
-                        "status TEXT NOT NULL" +
-                        ")");
-
-                st.executeUpdate("CREATE TABLE IF NOT EXISTS votes (" +
-                        "poll_id UUID NOT NULL, " +
-                        "player_uuid UUID NOT NULL, " +
-                        "option_index INTEGER NOT NULL, " +
-                        "voted_at BIGINT NOT NULL, " +
-                        "PRIMARY KEY (poll_id, player_uuid), " +
-                        "FOREIGN KEY (poll_id) REFERENCES polls(id) ON DELETE CASCADE" +
-                        ")");
+            pool = new ConnectionPool(url, props, plugin.getLogger(),
+                    plugin.getConfig().getInt("storage.postgres.pool.min-size", 2),
+                    plugin.getConfig().getInt("storage.postgres.pool.max-size", 8),
+                    plugin.getConfig().getLong("storage.postgres.pool.acquire-timeout-ms", 5000),
+                    plugin.getConfig().getInt("storage.postgres.pool.validation-timeout-seconds", 2),
+                    plugin.getConfig().getLong("storage.postgres.pool.validate-after-idle-ms", 30000),
+                    plugin.getConfig().getInt("storage.postgres.pool.statement-cache-size", 32));
+            pool.start();
+
+            boolean cacheEnabled = plugin.getConfig().getBoolean("storage.postgres.cache.enabled", true);
+            cache = new PollCache(
+                    cacheEnabled ? plugin.getConfig().getInt("storage.postgres.cache.max-polls", 1000) : 0,
+                    cacheEnabled ? plugin.getConfig().getInt("storage.postgres.cache.max-votes", 50000) : 0,
+                    plugin.getConfig().getLong("storage.postgres.cache.ttl-seconds", 300) * 1000);
+
+            int migrated = new SchemaMigrator(pool, plugin.getLogger(), plugin::getResource).migrate();
+            if (migrated > 0) plugin.getLogger().info("Applied " + migrated + " schema migrations");
+
+            plugin.getLogger().info("Indexed " + loadCodeIndex() + " poll codes");
+
+            if (plugin.getConfig().getBoolean("storage.postgres.write-behind.enabled", true)) {
+                writeBehind = new VoteWriteBehind(pool, plugin.getLogger(),
+                        plugin.getConfig().getLong("storage.postgres.write-behind.flush-interval-ms", 250),
+                        plugin.getConfig().getInt("storage.postgres.write-behind.max-batch", 500),
+                        plugin.getConfig().getInt("storage.postgres.write-behind.max-queued", 50000));
+                // A dropped vote was already counted and cached; reload both from the database
+                writeBehind.onDropped(pollIds -> pollIds.forEach(id -> {
+                    tallies.remove(id);
+                    cache.invalidateVotes(id);
+                }));
+            }
+
+            long statsInterval = plugin.getConfig().getLong("storage.postgres.pool.stats-log-interval-seconds", 0) * 20;
+            if (statsInterval > 0) {
+                statsTask = plugin.getFolia().getScheduler().runTimerAsync(() -> plugin.getLogger().info(pool.describe() + "; " + cache.describe()), statsInterval, statsInterval);
             }
         } catch (SQLException e) {
             plugin.getLogger().severe("Failed to init Postgres: " + e.getMessage());
         }
     }
 
+    private int loadCodeIndex() throws SQLException {
+        return pool.executeIdempotent(c -> {
+            int n = 0;
+            try (ResultSet rs = c.prepare(ALL_CODES).executeQuery()) {
+                while (rs.next()) {
+                    codeIndex.put((UUID) rs.getObject(1), rs.getString(2));
+                    n++;
+                }
+            }
+            return n;
+        });
+    }
+
+    /**
+     * Joins the cluster: written votes are announced to the other servers, and their changes drop whatever this
+     * server has cached about the poll.
+     */
+    public void attachCluster(ClusterEventBus bus) {
+        this.cluster = bus;
+        if (writeBehind != null) writeBehind.onFlushed(pollIds -> pollIds.forEach(id -> bus.publish(ClusterEvent.Type.TALLY_CHANGED, id)));
+        bus.subscribe(this::onClusterEvent);
+    }
+
+    private void onClusterEvent(ClusterEvent event) {
+        UUID id = event.getPollId();
+        switch (event.getType()) {
+            case POLL_CREATED, POLL_EDITED, POLL_CLOSED -> cache.invalidatePoll(id);
+            case POLL_REMOVED -> {
+                if (writeBehind != null) writeBehind.discard(id);
+                tallies.forget(id);
+                cache.invalidatePoll(id);
+                cache.invalidateVotes(id);
+                codeIndex.remove(id);
+            }
+            case TALLY_CHANGED -> {
+                // Reloaded on the next read from poll_tallies plus this server's unwritten votes
+                tallies.remove(id);
+                cache.invalidateVotes(id);
+            }
+            case RESYNC -> {
+                tallies.clear();
+                cache.clear();
+                codeIndex.clear();
+                try {
+                    loadCodeIndex();
+                } catch (SQLException e) {
+                    plugin.getLogger().severe("Failed to reload poll codes: " + e.getMessage());
+                }
+            }
+        }
+    }
+
     @Override
     public void close() {
-        try { if (connection != null) connection.close(); } catch (Exception ignored) {}
+        if (statsTask != null) statsTask.cancel();
+        if (writeBehind != null) writeBehind.close(plugin.getConfig().getLong("storage.postgres.write-behind.shutdown-timeout-ms", 5000));
+        if (pool != null) pool.close();
     }
 
+    public ConnectionPool getPool() { return pool; }
+    public VoteWriteBehind getWriteBehind() { return writeBehind; }
+    public PollCache getCache() { return cache; }
+
     @Override
     public void savePoll(Poll poll) {
-        String sql = "INSERT INTO polls (id, code, question, options_json, created_at, closes_at, status) VALUES (?, ?, ?, ?, ?, ?, ?) " +
-                "ON CONFLICT (id) DO UPDATE SET code=EXCLUDED.code, question=EXCLUDED.question, options_json=EXCLUDED.options_json, created_at=EXCLUDED.created_at, closes_at=EXCLUDED.closes_at, status=EXCLUDED.status";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, poll.getId());
-            ps.setString(2, poll.getCode());
-            ps.setString(3, poll.getQuestion());
-            ps.setString(4, gson.toJson(poll.getOptions()));
-            ps.setLong(5, poll.getCreatedAtEpochSeconds());
-            ps.setLong(6, poll.getClosesAtEpochSeconds());
-            ps.setString(7, poll.getStatus().name());
-            ps.executeUpdate();
+        try {
+            pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(SAVE_POLL);
+                ps.setObject(1, poll.getId());
+                ps.setString(2, poll.getCode());
+                ps.setString(3, poll.getQuestion());
+                ps.setArray(4, c.connection().createArrayOf("text", poll.getOptions().toArray()));
+                ps.setLong(5, poll.getCreatedAtEpochSeconds());
+                ps.setLong(6, poll.getClosesAtEpochSeconds());
+                ps.setString(7, poll.getStatus().name());
+                return ps.executeUpdate();
+            });
+            codeIndex.put(poll.getId(), poll.getCode());
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save poll: " + e.getMessage());
+            throw new StorageException("Failed to save poll", e);
+        } finally {
+            // Only once the row is committed; before that a concurrent read could cache the old row again
+            cache.invalidatePoll(poll.getId());
         }
     }
 
     @Override
     public Poll getPoll(UUID id) {
-        String sql = "SELECT code, question, options_json, created_at, closes_at, status FROM polls WHERE id = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, id);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    String code = rs.getString(1);
-                    String question = rs.getString(2);
-                    List<String> options = gson.fromJson(rs.getString(3), listStringType());
-                    long created = rs.getLong(4);
-                    long closes = rs.getLong(5);
-                    PollStatus status = PollStatus.valueOf(rs.getString(6));
-                    Poll p = new Poll(id, question, options, created, closes, status);
-                    p.setCode(code);
-                    return p;
+        Poll cached = cache.getPoll(id);
+        if (cached != null) return cached;
+        long version = cache.pollVersion();
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(GET_POLL);
+                ps.setObject(1, id);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? cachePoll(readPoll(rs), version) : null;
                 }
-            }
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get poll: " + e.getMessage());
+            throw new StorageException("Failed to get poll", e);
         }
-        return null;
     }
 
     @Override
@@ -123,128 +226,456 @@ public class PostgresPollStorage implements PollStorage {
             UUID id = UUID.fromString(idOrCode);
             return getPoll(id);
         } catch (Exception ignored) {}
-        String sql = "SELECT id, code, question, options_json, created_at, closes_at, status FROM polls WHERE lower(code) = lower(?)";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setString(1, idOrCode);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    UUID id = (UUID) rs.getObject(1);
-                    String code = rs.getString(2);
-                    String question = rs.getString(3);
-                    List<String> options = gson.fromJson(rs.getString(4), listStringType());
-                    long created = rs.getLong(5);
-                    long closes = rs.getLong(6);
-                    PollStatus status = PollStatus.valueOf(rs.getString(7));
-                    Poll p = new Poll(id, question, options, created, closes, status);
-                    p.setCode(code);
-                    return p;
+        UUID cachedId = cache.getPollId(idOrCode);
+        if (cachedId != null) return getPoll(cachedId);
+        long version = cache.pollVersion();
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(FIND_BY_CODE);
+                ps.setString(1, idOrCode);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next() ? cachePoll(readPoll(rs), version) : null;
                 }
-            }
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to find poll: " + e.getMessage());
+            throw new StorageException("Failed to find poll", e);
         }
-        return null;
     }
 
+    @Override
+    public List<String> completeCodes(String prefix, int limit) { return codeIndex.complete(prefix, limit); }
+
     @Override
     public List<Poll> getAllPolls() {
-        List<Poll> list = new ArrayList<>();
-        String sql = "SELECT id, code, question, options_json, created_at, closes_at, status FROM polls ORDER BY created_at DESC";
-        try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
-            while (rs.next()) {
-                UUID id = (UUID) rs.getObject(1);
-                String code = rs.getString(2);
-                String question = rs.getString(3);
-                List<String> options = gson.fromJson(rs.getString(4), listStringType());
-                long created = rs.getLong(5);
-                long closes = rs.getLong(6);
-                PollStatus status = PollStatus.valueOf(rs.getString(7));
-                Poll p = new Poll(id, question, options, created, closes, status);
-                p.setCode(code);
-                list.add(p);
-            }
+        long version = cache.pollVersion();
+        try {
+            return pool.executeIdempotent(c -> {
+                List<Poll> list = new ArrayList<>();
+                try (ResultSet rs = c.prepare(ALL_POLLS).executeQuery()) {
+                    while (rs.next()) list.add(cachePoll(readPoll(rs), version));
+                }
+                return list;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to list polls: " + e.getMessage());
+            throw new StorageException("Failed to list polls", e);
         }
-        return list;
+    }
+
+    @Override
+    public PollPage listPolls(PollStatus status, PollCursor after, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long version = cache.pollVersion();
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(LIST_POLLS[(status != null ? 1 : 0) + (after != null ? 2 : 0)]);
+                int i = 1;
+                if (status != null) ps.setString(i++, status.name());
+                if (after != null) {
+                    ps.setLong(i++, after.getCreatedAtEpochSeconds());
+                    ps.setObject(i++, after.getPollId());
+                }
+                // One extra row tells us whether there is a next page
+                ps.setInt(i, size + 1);
+                List<Poll> page = new ArrayList<>(size);
+                PollCursor next = null;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if (page.size() == size) {
+                            next = PollCursor.of(page.get(size - 1));
+                            break;
+                        }
+                        page.add(cachePoll(readPoll(rs), version));
+                    }
+                }
+                return new PollPage(page, next);
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to list polls", e);
+        }
+    }
+
+    private static String listPollsSql(boolean byStatus, boolean afterCursor) {
+        StringBuilder sql = new StringBuilder("SELECT " + POLL_COLUMNS + " FROM polls");
+        if (byStatus) sql.append(" WHERE status = ?");
+        if (afterCursor) sql.append(byStatus ? " AND" : " WHERE").append(" (created_at, id) < (?, ?)");
+        return sql.append(" ORDER BY created_at DESC, id DESC LIMIT ?").toString();
     }
 
     @Override
     public void removePoll(UUID id) {
-        try (PreparedStatement ps1 = connection.prepareStatement("DELETE FROM votes WHERE poll_id = ?");
-             PreparedStatement ps2 = connection.prepareStatement("DELETE FROM polls WHERE id = ?")) {
-            ps1.setObject(1, id);
-            ps1.executeUpdate();
-            ps2.setObject(1, id);
-            ps2.executeUpdate();
+        try {
+            if (writeBehind == null) {
+                deletePoll(id);
+            } else {
+                // Keeps a flush from writing the poll's queued votes between the delete and dropping them
+                synchronized (writeBehind.flushLock()) {
+                    deletePoll(id);
+                    writeBehind.discard(id);
+                }
+            }
+        } finally {
+            cache.invalidatePoll(id);
+            cache.invalidateVotes(id);
+        }
+        tallies.forget(id);
+        codeIndex.remove(id);
+    }
+
+    // Votes and tallies go with the poll through ON DELETE CASCADE, in the same statement
+    private void deletePoll(UUID id) {
+        try {
+            pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(DELETE_POLL);
+                ps.setObject(1, id);
+                return ps.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to remove poll", e);
+        }
+    }
+
+    @Override
+    public List<Poll> findOpenPolls(long closesBefore) {
+        long version = cache.pollVersion();
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(OPEN_POLLS);
+                ps.setLong(1, closesBefore);
+                List<Poll> list = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) list.add(cachePoll(readPoll(rs), version));
+                }
+                return list;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to remove poll: " + e.getMessage());
+            throw new StorageException("Failed to find open polls", e);
         }
     }
 
     @Override
-    public void saveVote(UUID pollId, UUID player, int optionIndex) {
-        String sql = "INSERT INTO votes (poll_id, player_uuid, option_index, voted_at) VALUES (?, ?, ?, ? ) " +
-                "ON CONFLICT (poll_id, player_uuid) DO NOTHING";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, pollId);
-            ps.setObject(2, player);
-            ps.setInt(3, optionIndex);
-            ps.setLong(4, Instant.now().getEpochSecond());
-            ps.executeUpdate();
+    public List<Poll> closePolls(Collection<UUID> ids) {
+        if (ids.isEmpty()) return new ArrayList<>();
+        try {
+            return pool.execute(c -> {
+                PreparedStatement ps = c.prepare(CLOSE_POLLS);
+                ps.setArray(1, c.connection().createArrayOf("uuid", ids.toArray()));
+                List<Poll> closed = new ArrayList<>(ids.size());
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) closed.add(readPoll(rs));
+                }
+                return closed;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to save vote: " + e.getMessage());
+            throw new StorageException("Failed to close polls", e);
+        } finally {
+            ids.forEach(cache::invalidatePoll);
+        }
+    }
+
+    /**
+     * Flushes this server's queued votes, then closes the polls and reads their stored tallies in one transaction,
+     * bypassing the local counters. Votes other servers accepted but had not flushed yet when the close committed are
+     * written afterwards and are not part of the announced result; with write-behind that is at most one of their
+     * flush intervals before the close.
+     */
+    @Override
+    public ClosedPolls closePollsCounted(Collection<UUID> ids) {
+        if (ids.isEmpty()) return new ClosedPolls(new ArrayList<>(), new HashMap<>());
+        if (writeBehind != null && !writeBehind.flushNow(CLOSE_FLUSH_TIMEOUT_MS)) {
+            plugin.getLogger().warning("Closing polls while some local votes are still unwritten; they will be missing from the announced results");
+        }
+        try {
+            return pool.execute(c -> {
+                Connection connection = c.connection();
+                connection.setAutoCommit(false);
+                PreparedStatement close = c.prepare(CLOSE_POLLS);
+                close.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                List<Poll> closed = new ArrayList<>(ids.size());
+                try (ResultSet rs = close.executeQuery()) {
+                    while (rs.next()) closed.add(readPoll(rs));
+                }
+                Map<UUID, int[]> counts = new HashMap<>();
+                if (!closed.isEmpty()) {
+                    for (Poll poll : closed) counts.put(poll.getId(), new int[Poll.MAX_OPTIONS]);
+                    PreparedStatement tally = c.prepare(TALLY_MANY);
+                    tally.setArray(1, connection.createArrayOf("uuid", counts.keySet().toArray()));
+                    try (ResultSet rs = tally.executeQuery()) {
+                        while (rs.next()) {
+                            int[] poll = counts.get((UUID) rs.getObject(1));
+                            int option = rs.getInt(2);
+                            if (poll != null && option >= 0 && option < poll.length) poll[option] = rs.getInt(3);
+                        }
+                    }
+                }
+                connection.commit();
+                return new ClosedPolls(closed, counts);
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to close polls", e);
+        } finally {
+            ids.forEach(cache::invalidatePoll);
+        }
+    }
+
+    @Override
+    public boolean saveVote(UUID pollId, UUID player, int optionIndex) {
+        // While queued votes fail to write, new ones are written directly (and refused if that fails too) instead of
+        // being acknowledged into a queue that only grows with the outage
+        boolean queue = writeBehind != null && !writeBehind.isFailing();
+        boolean accepted = queue
+                ? tallies.record(pollId, optionIndex, () -> writeBehind.enqueue(pollId, player, optionIndex))
+                : tallies.record(pollId, optionIndex, () -> (writeBehind == null || writeBehind.getPendingVote(pollId, player) == null)
+                        && insertVote(pollId, player, optionIndex));
+        if (accepted) {
+            cache.putVote(pollId, player, optionIndex);
+            ClusterEventBus bus = cluster;
+            // A queued vote is announced by the flush once it is actually written
+            if (bus != null && !queue) bus.publish(ClusterEvent.Type.TALLY_CHANGED, pollId);
+        }
+        return accepted;
+    }
+
+    private boolean insertVote(UUID pollId, UUID player, int optionIndex) {
+        try {
+            return pool.execute(c -> {
+                PreparedStatement ps = c.prepare(SAVE_VOTE);
+                ps.setObject(1, pollId);
+                ps.setObject(2, player);
+                ps.setInt(3, optionIndex);
+                ps.setLong(4, Instant.now().getEpochSecond());
+                return ps.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to save vote", e);
         }
     }
 
     @Override
     public boolean hasVoted(UUID pollId, UUID player) {
-        String sql = "SELECT 1 FROM votes WHERE poll_id = ? AND player_uuid = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, pollId);
-            ps.setObject(2, player);
-            try (ResultSet rs = ps.executeQuery()) {
-                return rs.next();
-            }
+        if (writeBehind != null && writeBehind.getPendingVote(pollId, player) != null) return true;
+        Integer cached = cache.getVote(pollId, player);
+        if (cached != null) return cached >= 0;
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(PLAYER_VOTE);
+                ps.setObject(1, pollId);
+                ps.setObject(2, player);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Integer option = rs.next() ? rs.getInt(1) : null;
+                    cache.putVote(pollId, player, option);
+                    return option != null;
+                }
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to check vote: " + e.getMessage());
+            throw new StorageException("Failed to check vote", e);
         }
-        return false;
     }
 
     @Override
     public Integer getPlayerVote(UUID pollId, UUID player) {
-        String sql = "SELECT option_index FROM votes WHERE poll_id = ? AND player_uuid = ?";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, pollId);
-            ps.setObject(2, player);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getInt(1);
-            }
+        if (writeBehind != null) {
+            Integer pending = writeBehind.getPendingVote(pollId, player);
+            if (pending != null) return pending;
+        }
+        Integer cached = cache.getVote(pollId, player);
+        if (cached != null) return cached >= 0 ? cached : null;
+        try {
+            return pool.executeIdempotent(c -> {
+                PreparedStatement ps = c.prepare(PLAYER_VOTE);
+                ps.setObject(1, pollId);
+                ps.setObject(2, player);
+                try (ResultSet rs = ps.executeQuery()) {
+                    Integer option = rs.next() ? rs.getInt(1) : null;
+                    cache.putVote(pollId, player, option);
+                    return option;
+                }
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to get player vote: " + e.getMessage());
+            throw new StorageException("Failed to get player vote", e);
         }
-        return null;
     }
 
     @Override
     public Map<Integer, Integer> getVoteTally(UUID pollId) {
-        Map<Integer, Integer> map = new HashMap<>();
-        String sql = "SELECT option_index, COUNT(*) FROM votes WHERE poll_id = ? GROUP BY option_index";
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, pollId);
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    map.put(rs.getInt(1), rs.getInt(2));
+        return TallyCounters.toTally(getVoteCounts(pollId));
+    }
+
+    @Override
+    public int[] getVoteCounts(UUID pollId) {
+        int[] counts = tallies.snapshot(pollId);
+        if (counts != null) return counts;
+        tallies.loadIfAbsent(pollId, () -> loadVoteCounts(pollId));
+        counts = tallies.snapshot(pollId);
+        return counts != null ? counts : TallyCounters.NO_VOTES;
+    }
+
+    @Override
+    public Map<UUID, int[]> getVoteCounts(Collection<UUID> pollIds) {
+        Map<UUID, int[]> result = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID pollId : pollIds) {
+            int[] counts = tallies.snapshot(pollId);
+            if (counts != null) result.put(pollId, counts);
+            else missing.add(pollId);
+        }
+        if (missing.isEmpty()) return result;
+        // Count every missing poll in one query, then load each one as getVoteCounts(UUID) would
+        long writes = tallies.unloadedWrites();
+        long flushes;
+        Map<UUID, int[]> queried;
+        if (writeBehind == null) {
+            flushes = 0;
+            queried = queryVoteCounts(missing);
+        } else {
+            synchronized (writeBehind.flushLock()) {
+                flushes = writeBehind.getFlushes();
+                queried = queryVoteCounts(missing);
+            }
+        }
+        for (UUID pollId : missing) {
+            int[] prefetched = queried.get(pollId);
+            tallies.loadIfAbsent(pollId, () -> loadVoteCounts(pollId, prefetched, writes, flushes));
+            int[] counts = tallies.snapshot(pollId);
+            result.put(pollId, counts != null ? counts : TallyCounters.NO_VOTES);
+        }
+        return result;
+    }
+
+    @Override
+    public List<UUID> getVoters(UUID pollId) {
+        if (writeBehind == null) return queryVoters(pollId);
+        // A vote leaves the pending set only once its batch is in the table, so nothing slips between the two reads
+        synchronized (writeBehind.flushLock()) {
+            List<UUID> voters = queryVoters(pollId);
+            writeBehind.addPendingVotersTo(pollId, voters);
+            return voters;
+        }
+    }
+
+    private List<UUID> queryVoters(UUID pollId) {
+        try {
+            return pool.executeIdempotent(c -> {
+                List<UUID> voters = new ArrayList<>();
+                PreparedStatement ps = c.prepare(VOTERS);
+                ps.setObject(1, pollId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) voters.add((UUID) rs.getObject(1));
+                }
+                return voters;
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to load voters", e);
+        }
+    }
+
+    /**
+     * Rebuilds poll_tallies from the votes table. Vote inserts wait while it runs, so no vote is counted twice or
+     * missed; local counters are dropped afterwards and reload on their next read.
+     */
+    @Override
+    public int repairTallies() {
+        try {
+            int repaired = pool.execute(c -> {
+                Connection connection = c.connection();
+                connection.setAutoCommit(false);
+                try (Statement st = connection.createStatement()) {
+                    st.execute("LOCK TABLE votes IN SHARE MODE");
+                    st.executeUpdate("DELETE FROM poll_tallies");
+                    st.executeUpdate("INSERT INTO poll_tallies (poll_id, option_index, count) " +
+                            "SELECT poll_id, option_index, COUNT(*) FROM votes GROUP BY poll_id, option_index");
+                    int polls;
+                    try (ResultSet rs = st.executeQuery("SELECT COUNT(DISTINCT poll_id) FROM poll_tallies")) {
+                        polls = rs.next() ? rs.getInt(1) : 0;
+                    }
+                    connection.commit();
+                    return polls;
                 }
+            });
+            tallies.clear();
+            return repaired;
+        } catch (SQLException e) {
+            throw new StorageException("Failed to repair tallies", e);
+        }
+    }
+
+    private int[] loadVoteCounts(UUID pollId) {
+        return loadVoteCounts(pollId, null, 0, 0);
+    }
+
+    /**
+     * Counts a poll's votes once; after that the counters are kept current as votes are accepted. Counts queried
+     * earlier are reused only if no vote was recorded for an unloaded poll and no batch was flushed since.
+     */
+    private int[] loadVoteCounts(UUID pollId, int[] queried, long writesAtQuery, long flushesAtQuery) {
+        boolean current = queried != null && tallies.unloadedWrites() == writesAtQuery;
+        if (writeBehind == null) return current ? queried : queryVoteCounts(pollId);
+        synchronized (writeBehind.flushLock()) {
+            int[] counts = current && writeBehind.getFlushes() == flushesAtQuery ? queried : queryVoteCounts(pollId);
+            Map<Integer, Integer> pending = new HashMap<>();
+            writeBehind.addPendingTo(pollId, pending);
+            for (Map.Entry<Integer, Integer> e : pending.entrySet()) {
+                if (e.getKey() >= 0 && e.getKey() < counts.length) counts[e.getKey()] += e.getValue();
             }
+            return counts;
+        }
+    }
+
+    private int[] queryVoteCounts(UUID pollId) {
+        try {
+            return pool.executeIdempotent(c -> {
+                int[] counts = new int[Poll.MAX_OPTIONS];
+                PreparedStatement ps = c.prepare(TALLY);
+                ps.setObject(1, pollId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int option = rs.getInt(1);
+                        if (option >= 0 && option < counts.length) counts[option] = rs.getInt(2);
+                    }
+                }
+                return counts;
+            });
         } catch (SQLException e) {
-            plugin.getLogger().severe("Failed to tally votes: " + e.getMessage());
+            throw new StorageException("Failed to tally votes", e);
         }
-        return map;
     }
 
-    private Type listStringType() {
-        return new TypeToken<List<String>>(){}.getType();
+    private Map<UUID, int[]> queryVoteCounts(Collection<UUID> pollIds) {
+        try {
+            return pool.executeIdempotent(c -> {
+                Map<UUID, int[]> counts = new HashMap<>();
+                for (UUID pollId : pollIds) counts.put(pollId, new int[Poll.MAX_OPTIONS]);
+                PreparedStatement ps = c.prepare(TALLY_MANY);
+                ps.setArray(1, c.connection().createArrayOf("uuid", pollIds.toArray()));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int[] poll = counts.get((UUID) rs.getObject(1));
+                        int option = rs.getInt(2);
+                        if (poll != null && option >= 0 && option < poll.length) poll[option] = rs.getInt(3);
+                    }
+                }
+                return counts;
+            });
+        } catch (SQLException e) {
+            throw new StorageException("Failed to tally votes", e);
+        }
+    }
+
+    private Poll cachePoll(Poll poll, long version) {
+        cache.putPoll(poll, version);
+        codeIndex.put(poll.getId(), poll.getCode());
+        return poll;
+    }
+
+    private Poll readPoll(ResultSet rs) throws SQLException {
+        UUID id = (UUID) rs.getObject(1);
+        String code = rs.getString(2);
+        String question = rs.getString(3);
+        List<String> options = new ArrayList<>(Arrays.asList((String[]) rs.getArray(4).getArray()));
+        long created = rs.getLong(5);
+        long closes = rs.getLong(6);
+        PollStatus status = PollStatus.valueOf(rs.getString(7));
+        Poll p = new Poll(id, question, options, created, closes, status);
+        p.setCode(code);
+        return p;
     }
 }
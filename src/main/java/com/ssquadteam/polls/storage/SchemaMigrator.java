@@ -0,0 +1,126 @@
+package com.ssquadteam.polls.storage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Brings the Postgres schema up to date by running the scripts under {@code db/migration} that are newer than the
+ * version recorded in {@code schema_version}. Each script runs in its own transaction, and an advisory lock keeps
+ * servers sharing a database from migrating it at the same time.
+ */
+class SchemaMigrator {
+
+    // Append new scripts at the end; a released script is never edited
+    static final String[] MIGRATIONS = {
+            "V1__create_tables.sql",
+            "V2__code_and_closing_indexes.sql",
+            "V3__listing_indexes.sql",
+            "V4__options_text_array.sql",
+            "V5__poll_tallies.sql"
+    };
+    private static final String LOCATION = "db/migration/";
+    private static final long LOCK_KEY = 0x506F6C6C73L;
+
+    private final ConnectionPool pool;
+    private final Logger logger;
+    private final Function<String, InputStream> resources;
+
+    SchemaMigrator(ConnectionPool pool, Logger logger, Function<String, InputStream> resources) {
+        this.pool = pool;
+        this.logger = logger;
+        this.resources = resources;
+    }
+
+    /** Applies every pending migration and returns how many ran. */
+    int migrate() throws SQLException {
+        List<List<String>> scripts = new ArrayList<>(MIGRATIONS.length);
+        for (String name : MIGRATIONS) scripts.add(load(name));
+        return pool.execute(c -> {
+            Connection connection = c.connection();
+            try (Statement st = connection.createStatement()) {
+                st.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+                try {
+                    st.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version (" +
+                            "version INTEGER PRIMARY KEY, " +
+                            "script TEXT NOT NULL, " +
+                            "installed_at BIGINT NOT NULL" +
+                            ")");
+                    int current = currentVersion(st);
+                    if (current > MIGRATIONS.length) {
+                        logger.warning("Database schema version " + current + " is newer than this plugin (" + MIGRATIONS.length + ")");
+                    }
+                    int applied = 0;
+                    for (int version = current + 1; version <= MIGRATIONS.length; version++) {
+                        apply(connection, st, version, scripts.get(version - 1));
+                        applied++;
+                    }
+                    return applied;
+                } finally {
+                    st.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        });
+    }
+
+    private int currentVersion(Statement st) throws SQLException {
+        try (ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void apply(Connection connection, Statement st, int version, List<String> statements) throws SQLException {
+        String name = MIGRATIONS[version - 1];
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try {
+            for (String sql : statements) st.execute(sql);
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO schema_version (version, script, installed_at) VALUES (?, ?, ?)")) {
+                ps.setInt(1, version);
+                ps.setString(2, name);
+                ps.setLong(3, Instant.now().getEpochSecond());
+                ps.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Migration " + name + " failed: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        logger.info(String.format("Applied schema migration %s in %.1fms", name, (System.nanoTime() - start) / 1_000_000.0));
+    }
+
+    /** Reads a script and splits it into statements on {@code ;}, dropping {@code --} comment lines. */
+    private List<String> load(String name) throws SQLException {
+        InputStream in = resources.apply(LOCATION + name);
+        if (in == null) throw new SQLException("Missing schema migration " + LOCATION + name);
+        StringBuilder sql = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith("--")) continue;
+                sql.append(line).append('\n');
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to read schema migration " + name + ": " + e.getMessage(), e);
+        }
+        List<String> statements = new ArrayList<>();
+        for (String statement : sql.toString().split(";")) {
+            if (!statement.isBlank()) statements.add(statement.trim());
+        }
+        return statements;
+    }
+}
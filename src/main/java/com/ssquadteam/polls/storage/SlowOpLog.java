@@ -0,0 +1,102 @@
+package com.ssquadteam.polls.storage;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Append-only text log of slow storage calls, written by one background thread so the caller never waits on the
+ * file. Once the file passes {@code maxBytes} it becomes {@code .1}, older files shift up and any past {@code files}
+ * are dropped.
+ */
+public class SlowOpLog {
+
+    private final File file;
+    private final long maxBytes;
+    private final int files;
+    private final Logger logger;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "polls-slow-log");
+        t.setDaemon(true);
+        return t;
+    });
+    private Writer out;
+    private long size;
+
+    public SlowOpLog(File file, long maxBytes, int files, Logger logger) {
+        this.file = file;
+        this.maxBytes = Math.max(1024, maxBytes);
+        this.files = Math.max(1, files);
+        this.logger = logger;
+    }
+
+    public void append(String line) {
+        try {
+            writer.execute(() -> write(line));
+        } catch (RejectedExecutionException ignored) {
+            // Closing
+        }
+    }
+
+    private void write(String line) {
+        try {
+            if (out == null) open();
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            size += line.length() + 1;
+            if (size >= maxBytes) rotate();
+        } catch (IOException e) {
+            logger.warning("Failed to write " + file.getName() + ": " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    private void open() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null) parent.mkdirs();
+        out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        size = file.length();
+    }
+
+    private void rotate() throws IOException {
+        closeQuietly();
+        Files.deleteIfExists(rotated(files).toPath());
+        for (int i = files - 1; i >= 1; i--) {
+            File from = rotated(i);
+            if (from.exists()) Files.move(from.toPath(), rotated(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file.toPath(), rotated(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private File rotated(int index) {
+        return new File(file.getParentFile(), file.getName() + "." + index);
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try { out.close(); } catch (IOException ignored) {}
+        out = null;
+    }
+
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly();
+    }
+}
@@ -0,0 +1,28 @@
+package com.ssquadteam.polls.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Collects the SQL a thread prepares while the watchdog is timing one of its storage calls. */
+final class SqlTrace {
+
+    private static final ThreadLocal<List<String>> CURRENT = new ThreadLocal<>();
+
+    private SqlTrace() {}
+
+    static void begin() {
+        CURRENT.set(new ArrayList<>(2));
+    }
+
+    static void note(String sql) {
+        List<String> statements = CURRENT.get();
+        if (statements != null) statements.add(sql);
+    }
+
+    /** Stops collecting and returns what was prepared since {@link #begin()}. */
+    static List<String> end() {
+        List<String> statements = CURRENT.get();
+        CURRENT.remove();
+        return statements == null ? List.of() : statements;
+    }
+}
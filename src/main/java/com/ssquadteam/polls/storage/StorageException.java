@@ -0,0 +1,16 @@
+package com.ssquadteam.polls.storage;
+
+/**
+ * Thrown by a backend when a storage call could not be completed, wrapping the SQL or I/O error behind it.
+ * Async callers see it as the cause of their failed future.
+ */
+public class StorageException extends RuntimeException {
+
+    public StorageException(String message) {
+        super(message);
+    }
+
+    public StorageException(String message, Throwable cause) {
+        super(message + ": " + cause.getMessage(), cause);
+    }
+}
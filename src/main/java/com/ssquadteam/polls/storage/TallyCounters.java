@@ -0,0 +1,144 @@
+package com.ssquadteam.polls.storage;
+
+import com.ssquadteam.polls.model.Poll;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Per-poll vote counts, one slot per option, bumped as votes are accepted so a tally read never recounts votes.
+ * Each poll's counts are an immutable array replaced on every vote, so reads hand out the current array without
+ * copying; votes are far rarer than the book opens and closes that read them.
+ * <p>
+ * Writes and loads for the same poll are serialized by one of a fixed set of striped locks held outside the counter
+ * map, so the database round trip they make never holds a map bin lock, and a poll always maps to the same lock however
+ * often its counts are dropped and reloaded. Polls sharing a stripe only wait on each other's round trips.
+ */
+public class TallyCounters {
+
+    private static final int LOCK_STRIPES = 256;
+    /** Counts of a poll without votes; shared like a {@link #snapshot}, so never modified. */
+    static final int[] NO_VOTES = new int[Poll.MAX_OPTIONS];
+
+    private final Map<UUID, int[]> counters = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private final AtomicLong unloadedWrites = new AtomicLong();
+    // Bumped by remove and clear; a load that started before a bump is not installed
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public TallyCounters() {
+        for (int i = 0; i < LOCK_STRIPES; i++) locks[i] = new ReentrantLock();
+    }
+
+    public void increment(UUID pollId, int optionIndex) {
+        if (optionIndex < 0 || optionIndex >= Poll.MAX_OPTIONS) return;
+        counters.compute(pollId, (k, counts) -> bumped(counts == null ? new int[Poll.MAX_OPTIONS] : counts, optionIndex));
+    }
+
+    private static int[] bumped(int[] counts, int optionIndex) {
+        int[] next = counts.clone();
+        next[optionIndex]++;
+        return next;
+    }
+
+    /**
+     * Runs {@code write} and, if it accepted the vote, bumps the counter when this poll's counts are loaded.
+     * Serialized with {@link #loadIfAbsent} for the same poll, so a vote is never both loaded and counted.
+     */
+    public boolean record(UUID pollId, int optionIndex, BooleanSupplier write) {
+        ReentrantLock lock = lock(pollId);
+        lock.lock();
+        try {
+            if (!write.getAsBoolean()) return false;
+            if (optionIndex < 0 || optionIndex >= Poll.MAX_OPTIONS) return true;
+            if (counters.computeIfPresent(pollId, (k, counts) -> bumped(counts, optionIndex)) == null) unloadedWrites.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loads a poll's counts through {@code loader} unless they are loaded already. A null result is not cached, and
+     * neither is one that raced a {@link #remove} or {@link #clear}; the next read loads again.
+     */
+    public void loadIfAbsent(UUID pollId, Supplier<int[]> loader) {
+        if (counters.containsKey(pollId)) return;
+        ReentrantLock lock = lock(pollId);
+        lock.lock();
+        try {
+            if (counters.containsKey(pollId)) return;
+            long seen = invalidations.get();
+            int[] counts = loader.get();
+            if (counts == null) return;
+            int[] snapshot = Arrays.copyOf(counts, Poll.MAX_OPTIONS);
+            synchronized (invalidations) {
+                if (invalidations.get() == seen) counters.putIfAbsent(pollId, snapshot);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lock(UUID pollId) {
+        int h = pollId.hashCode();
+        return locks[(h ^ (h >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    /**
+     * Number of votes recorded so far for polls without loaded counts. Counts queried before this value last
+     * changed may be missing such a vote and should be queried again before loading.
+     */
+    public long unloadedWrites() { return unloadedWrites.get(); }
+
+    /** Replaces a poll's counts outright. */
+    public void set(UUID pollId, int[] counts) {
+        counters.put(pollId, Arrays.copyOf(counts, Poll.MAX_OPTIONS));
+    }
+
+    public boolean isLoaded(UUID pollId) { return counters.containsKey(pollId); }
+
+    public void remove(UUID pollId) {
+        synchronized (invalidations) {
+            invalidations.incrementAndGet();
+            counters.remove(pollId);
+        }
+    }
+
+    /** Drops a deleted poll's counts. */
+    public void forget(UUID pollId) {
+        remove(pollId);
+    }
+
+    public void clear() {
+        synchronized (invalidations) {
+            invalidations.incrementAndGet();
+            counters.clear();
+        }
+    }
+
+    public int size() { return counters.size(); }
+
+    /**
+     * The poll's current counts, {@link Poll#MAX_OPTIONS} slots long, or null if none are loaded. The array is shared
+     * with every other reader and must not be modified; a later vote replaces it rather than changing it.
+     */
+    public int[] snapshot(UUID pollId) {
+        return counters.get(pollId);
+    }
+
+    public static Map<Integer, Integer> toTally(int[] counts) {
+        Map<Integer, Integer> tally = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) tally.put(i, counts[i]);
+        }
+        return tally;
+    }
+}
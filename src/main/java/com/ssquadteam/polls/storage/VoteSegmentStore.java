@@ -0,0 +1,274 @@
+package com.ssquadteam.polls.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Binary vote files for the JSON backend, one memory-mapped segment per poll in {@code votes/<pollId>.seg}.
+ * A segment is a 32 byte header (magic, version, poll id, record count) followed by fixed 25 byte records
+ * (player msb, player lsb, voted-at seconds, option). Records are appended at the tail and the count is bumped
+ * after the record is written, so a torn append is simply not counted.
+ * <p>
+ * Segments are only mapped while votes are being appended to them: loading reads each one and releases it, a closing
+ * poll's segment is released, and at most {@code maxMapped} stay mapped, the least recently written going first.
+ * An existing file is only ever reopened, never created over; one that can't be read is moved aside as
+ * {@code .corrupt}, and votes for its poll are refused if even that fails.
+ */
+class VoteSegmentStore {
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(UUID pollId, long playerMsb, long playerLsb, int optionIndex);
+    }
+
+    private static final int MAGIC = 0x504F4C56; // "POLV"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int COUNT_OFFSET = 24;
+    private static final int RECORD_SIZE = 25;
+    private static final int INITIAL_RECORDS = 1024;
+    private static final String SUFFIX = ".seg";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+
+    private final File directory;
+    private final Logger logger;
+    private final boolean fsync;
+    private final int maxMapped;
+    private final Map<UUID, Segment> segments = new ConcurrentHashMap<>();
+    // Deleted polls, so a vote racing the delete can't bring the segment back
+    private final Set<UUID> deleted = ConcurrentHashMap.newKeySet();
+    // Polls whose unreadable segment could not be moved aside; writing would bury the votes still in it
+    private final Set<UUID> unwritable = ConcurrentHashMap.newKeySet();
+
+    VoteSegmentStore(File directory, Logger logger, boolean fsync, int maxMapped) {
+        this.directory = directory;
+        this.logger = logger;
+        this.fsync = fsync;
+        this.maxMapped = Math.max(1, maxMapped);
+    }
+
+    /**
+     * Reads every segment on disk, feeding its records to {@code visitor} straight from the mapped buffer, and
+     * releases it again. Returns the number of votes read.
+     */
+    int load(Visitor visitor) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) return 0;
+        int loaded = 0;
+        for (File file : files) {
+            Segment segment;
+            try {
+                segment = Segment.open(file, pollIdOf(file));
+            } catch (IOException e) {
+                quarantine(file, e);
+                continue;
+            }
+            try {
+                loaded += segment.forEach(visitor);
+            } finally {
+                segment.close();
+            }
+        }
+        return loaded;
+    }
+
+    private void quarantine(File file, IOException cause) {
+        File aside = new File(file.getPath() + CORRUPT_SUFFIX);
+        if (aside.exists()) aside = new File(file.getPath() + "." + System.currentTimeMillis() + CORRUPT_SUFFIX);
+        try {
+            Files.move(file.toPath(), aside.toPath());
+            logger.severe("Unreadable vote segment " + file.getName() + " (" + cause.getMessage() + ") moved to "
+                    + aside.getName() + "; its votes are not loaded");
+        } catch (IOException e) {
+            UUID pollId = pollIdOf(file);
+            if (pollId != null) unwritable.add(pollId);
+            logger.severe("Unreadable vote segment " + file.getName() + " (" + cause.getMessage() + ") could not be moved aside ("
+                    + e.getMessage() + "); votes for its poll are refused until it is repaired or removed");
+        }
+    }
+
+    private static UUID pollIdOf(File file) {
+        String name = file.getName();
+        try {
+            return UUID.fromString(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    void append(UUID pollId, UUID player, int optionIndex, long votedAt) throws IOException {
+        while (true) {
+            Segment segment = segments.get(pollId);
+            if (segment == null) segment = map(pollId);
+            if (segment.append(player, optionIndex, votedAt, fsync)) return;
+            // Released or deleted since the lookup; map it again, or find out it was deleted
+        }
+    }
+
+    private synchronized Segment map(UUID pollId) throws IOException {
+        Segment segment = segments.get(pollId);
+        if (segment != null) return segment;
+        if (deleted.contains(pollId)) throw new IOException("poll " + pollId + " was removed");
+        if (unwritable.contains(pollId)) throw new IOException("vote segment of poll " + pollId + " is unreadable");
+        if (segments.size() >= maxMapped) releaseLeastRecent();
+        File file = new File(directory, pollId + SUFFIX);
+        segment = file.exists() ? Segment.open(file, pollId) : Segment.create(file, pollId);
+        segments.put(pollId, segment);
+        return segment;
+    }
+
+    // Scans the mapped segments, at most maxMapped of them, only when a new one has to be mapped
+    private void releaseLeastRecent() {
+        Segment oldest = null;
+        for (Segment segment : segments.values()) {
+            if (oldest == null || segment.lastWrite < oldest.lastWrite) oldest = segment;
+        }
+        if (oldest != null) release(oldest.pollId);
+    }
+
+    /** Unmaps a poll's segment, e.g. once the poll is closed; a later vote maps it again. */
+    void release(UUID pollId) {
+        Segment segment = segments.remove(pollId);
+        if (segment == null) return;
+        segment.force();
+        segment.close();
+    }
+
+    synchronized void delete(UUID pollId) {
+        deleted.add(pollId);
+        Segment segment = segments.remove(pollId);
+        if (segment != null) segment.close();
+        File file = new File(directory, pollId + SUFFIX);
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            logger.warning("Failed to delete vote segment " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /** Forces every segment's pending writes to disk. */
+    void force() {
+        for (Segment segment : segments.values()) segment.force();
+    }
+
+    void close() {
+        for (Segment segment : segments.values()) {
+            segment.force();
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private static final class Segment {
+        final File file;
+        final UUID pollId;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private int count;
+        private boolean closed;
+        // Read unlocked by releaseLeastRecent; a stale value only picks a slightly different segment
+        volatile long lastWrite = System.nanoTime();
+
+        private Segment(File file, UUID pollId, FileChannel channel, MappedByteBuffer buffer, int count) {
+            this.file = file;
+            this.pollId = pollId;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.count = count;
+        }
+
+        static Segment create(File file, UUID pollId) throws IOException {
+            // CREATE_NEW: a fresh header must never be written over an existing segment's votes
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = map(channel, HEADER_SIZE + (long) INITIAL_RECORDS * RECORD_SIZE);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, pollId.getMostSignificantBits());
+            buffer.putLong(16, pollId.getLeastSignificantBits());
+            buffer.putInt(COUNT_OFFSET, 0);
+            return new Segment(file, pollId, channel, buffer, 0);
+        }
+
+        /** Opens an existing segment, checking it belongs to {@code expected} when that is known. */
+        static Segment open(File file, UUID expected) throws IOException {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long size = channel.size();
+                if (size < HEADER_SIZE) throw new IOException("truncated header");
+                MappedByteBuffer buffer = map(channel, size);
+                if (buffer.getInt(0) != MAGIC) throw new IOException("bad magic");
+                if (buffer.getInt(4) != VERSION) throw new IOException("unsupported version " + buffer.getInt(4));
+                UUID pollId = new UUID(buffer.getLong(8), buffer.getLong(16));
+                if (expected != null && !expected.equals(pollId)) throw new IOException("holds votes of poll " + pollId);
+                int count = buffer.getInt(COUNT_OFFSET);
+                int fits = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+                count = Math.max(0, Math.min(count, fits));
+                return new Segment(file, pollId, channel, buffer, count);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            return buffer;
+        }
+
+        synchronized int forEach(Visitor visitor) {
+            for (int i = 0; i < count; i++) {
+                int at = HEADER_SIZE + i * RECORD_SIZE;
+                visitor.accept(pollId, buffer.getLong(at), buffer.getLong(at + 8), buffer.get(at + 24));
+            }
+            return count;
+        }
+
+        /** Appends a vote; returns false without writing if the segment was released or deleted in the meantime. */
+        synchronized boolean append(UUID player, int optionIndex, long votedAt, boolean fsync) throws IOException {
+            if (closed) return false;
+            int at = HEADER_SIZE + count * RECORD_SIZE;
+            if (at + RECORD_SIZE > buffer.capacity()) {
+                // Remapping past the end of the file grows it
+                buffer = map(channel, HEADER_SIZE + (long) Math.max(count, INITIAL_RECORDS) * 2 * RECORD_SIZE);
+            }
+            buffer.putLong(at, player.getMostSignificantBits());
+            buffer.putLong(at + 8, player.getLeastSignificantBits());
+            buffer.putLong(at + 16, votedAt);
+            buffer.put(at + 24, (byte) optionIndex);
+            buffer.putInt(COUNT_OFFSET, ++count);
+            if (fsync) buffer.force();
+            lastWrite = System.nanoTime();
+            return true;
+        }
+
+        synchronized void force() {
+            if (!closed) buffer.force();
+        }
+
+        /**
+         * Closes the channel and drops the buffer. Java can't unmap a buffer explicitly, so the mapping itself goes
+         * once the dropped buffer is collected.
+         */
+        synchronized void close() {
+            if (closed) return;
+            closed = true;
+            buffer = null;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.ssquadteam.polls.storage;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Votes for one poll in an open-addressing table keyed on the two halves of the player UUID. Each slot is two longs
+ * and a byte holding {@code option + 1}, where 0 marks an empty slot, so a vote costs about 17 bytes plus load-factor
+ * slack instead of a boxed key, a boxed value and a map node.
+ */
+final class VoteTable {
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long playerMsb, long playerLsb, int optionIndex);
+    }
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_OPTION = Byte.MAX_VALUE - 1;
+
+    private final StampedLock lock = new StampedLock();
+    private long[] msbs;
+    private long[] lsbs;
+    private byte[] options;
+    private int size;
+    private int threshold;
+
+    VoteTable() { this(0); }
+
+    VoteTable(int expectedVotes) {
+        allocate(capacityFor(expectedVotes));
+    }
+
+    /**
+     * Records a vote unless the player already has one. Returns false if they did.
+     */
+    boolean putIfAbsent(UUID player, int optionIndex) {
+        if (optionIndex < 0 || optionIndex > MAX_OPTION) throw new IllegalArgumentException("Option index out of range: " + optionIndex);
+        long msb = player.getMostSignificantBits();
+        long lsb = player.getLeastSignificantBits();
+        long stamp = lock.writeLock();
+        try {
+            int slot = slotOf(msbs, lsbs, options, msb, lsb);
+            if (slot >= 0) return false;
+            if (size >= threshold) {
+                resize();
+                slot = slotOf(msbs, lsbs, options, msb, lsb);
+            }
+            int free = ~slot;
+            msbs[free] = msb;
+            lsbs[free] = lsb;
+            options[free] = (byte) (optionIndex + 1);
+            size++;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the player's option index, or -1 if they have not voted. Does not allocate; usually takes no lock.
+     */
+    int get(UUID player) {
+        long msb = player.getMostSignificantBits();
+        long lsb = player.getLeastSignificantBits();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int option = lookup(msbs, lsbs, options, msb, lsb);
+            if (lock.validate(stamp)) return option;
+        }
+        stamp = lock.readLock();
+        try {
+            return lookup(msbs, lsbs, options, msb, lsb);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean contains(UUID player) { return get(player) >= 0; }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void forEach(Visitor visitor) {
+        long stamp = lock.readLock();
+        try {
+            for (int i = 0; i < options.length; i++) {
+                if (options[i] != 0) visitor.accept(msbs[i], lsbs[i], options[i] - 1);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static int lookup(long[] msbs, long[] lsbs, byte[] options, long msb, long lsb) {
+        // An optimistic reader may see the arrays mid-resize; bail out and let validate() send it to the read lock
+        if (msbs.length != options.length || lsbs.length != options.length) return -1;
+        int slot = slotOf(msbs, lsbs, options, msb, lsb);
+        return slot >= 0 ? options[slot] - 1 : -1;
+    }
+
+    /** Index of the player's slot, or the bitwise complement of the first empty slot on their probe path. */
+    private static int slotOf(long[] msbs, long[] lsbs, byte[] options, long msb, long lsb) {
+        int mask = options.length - 1;
+        int i = hash(msb, lsb) & mask;
+        for (int probes = 0; probes < options.length; probes++) {
+            if (options[i] == 0) return ~i;
+            if (msbs[i] == msb && lsbs[i] == lsb) return i;
+            i = (i + 1) & mask;
+        }
+        return ~0;
+    }
+
+    private void resize() {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        byte[] oldOptions = options;
+        allocate(oldOptions.length << 1);
+        for (int i = 0; i < oldOptions.length; i++) {
+            if (oldOptions[i] == 0) continue;
+            int free = ~slotOf(msbs, lsbs, options, oldMsbs[i], oldLsbs[i]);
+            msbs[free] = oldMsbs[i];
+            lsbs[free] = oldLsbs[i];
+            options[free] = oldOptions[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        options = new byte[capacity];
+        threshold = capacity - (capacity >>> 2);
+    }
+
+    private static int capacityFor(int expectedVotes) {
+        int needed = (int) Math.min(1 << 30, (long) Math.max(expectedVotes, 1) * 4 / 3 + 1);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
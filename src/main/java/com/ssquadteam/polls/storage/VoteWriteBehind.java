@@ -0,0 +1,395 @@
+package com.ssquadteam.polls.storage;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Queues accepted votes in memory and writes them to Postgres as one multi-row insert every flush interval,
+ * or sooner once a full batch is waiting. Votes stay visible through {@link #getPendingVote} until written.
+ * <p>
+ * Once a write fails {@link #isFailing()} turns true and callers stop queueing until a write succeeds again, so a
+ * crash loses at most the votes accepted in one flush interval plus however long the failing write took. The failed
+ * batch itself is retried with growing backoff. A vote the database rejects as invalid, or that it skips because the
+ * poll is gone or the player already voted elsewhere, is dropped, and the drop listener rolls back what was counted
+ * for it.
+ */
+public class VoteWriteBehind {
+
+    // Votes that were actually inserted are added to poll_tallies in the same statement
+    private static final String INSERT_BATCH = "WITH inserted AS (" +
+            "INSERT INTO votes (poll_id, player_uuid, option_index, voted_at) " +
+            "SELECT v.poll_id, v.player_uuid, v.option_index, v.voted_at " +
+            "FROM unnest(?::uuid[], ?::uuid[], ?::int[], ?::bigint[]) AS v(poll_id, player_uuid, option_index, voted_at) " +
+            "WHERE EXISTS (SELECT 1 FROM polls p WHERE p.id = v.poll_id) " +
+            "ON CONFLICT (poll_id, player_uuid) DO NOTHING " +
+            "RETURNING poll_id, player_uuid, option_index), " +
+            "tallied AS (" +
+            "INSERT INTO poll_tallies (poll_id, option_index, count) " +
+            "SELECT poll_id, option_index, COUNT(*) FROM inserted GROUP BY poll_id, option_index " +
+            "ON CONFLICT (poll_id, option_index) DO UPDATE SET count = poll_tallies.count + EXCLUDED.count) " +
+            "SELECT poll_id, player_uuid FROM inserted";
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private record VoteKey(UUID pollId, UUID player) {}
+
+    private static final class PendingVote {
+        final UUID pollId;
+        final UUID player;
+        final int optionIndex;
+        final long votedAt;
+
+        PendingVote(UUID pollId, UUID player, int optionIndex, long votedAt) {
+            this.pollId = pollId;
+            this.player = player;
+            this.optionIndex = optionIndex;
+            this.votedAt = votedAt;
+        }
+    }
+
+    private final ConnectionPool pool;
+    private final Logger logger;
+    private final int maxBatch;
+    private final int maxQueued;
+    private final long intervalNanos;
+
+    private final ConcurrentLinkedQueue<PendingVote> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Map<UUID, Map<UUID, Integer>> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private volatile Consumer<Set<UUID>> flushListener;
+    private volatile Consumer<Set<UUID>> dropListener;
+    private volatile WatchdogPollStorage watchdog;
+    private volatile boolean failing;
+    // Only touched by the flusher thread
+    private long retryAtNanos;
+    private long backoffNanos;
+    private int failedAttempts;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public VoteWriteBehind(ConnectionPool pool, Logger logger, long flushIntervalMillis, int maxBatch, int maxQueued) {
+        this.pool = pool;
+        this.logger = logger;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxQueued = Math.max(this.maxBatch, maxQueued);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "polls-vote-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(10, flushIntervalMillis);
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues a vote. Returns false if this player already has a pending vote on the poll, and throws
+     * {@link StorageException} without queueing it when the queue is full.
+     */
+    public boolean enqueue(UUID pollId, UUID player, int optionIndex) {
+        if (queued.get() >= maxQueued) {
+            throw new StorageException("Vote queue is full (" + maxQueued + " votes waiting for the database)");
+        }
+        if (pending.computeIfAbsent(pollId, k -> new ConcurrentHashMap<>()).putIfAbsent(player, optionIndex) != null) return false;
+        queue.add(new PendingVote(pollId, player, optionIndex, Instant.now().getEpochSecond()));
+        if (queued.incrementAndGet() >= maxBatch && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException ignored) {
+                // shutting down; close() drains the queue
+            }
+        }
+        return true;
+    }
+
+    /** Called after each written batch with the polls it had votes for. */
+    public void onFlushed(Consumer<Set<UUID>> listener) { this.flushListener = listener; }
+
+    /** Called with the polls of votes that were dropped after being acknowledged, so their counts can be rolled back. */
+    public void onDropped(Consumer<Set<UUID>> listener) { this.dropListener = listener; }
+
+    /** Reports each batch insert, with its SQL, to the watchdog's slow-op log while the watchdog is enabled. */
+    public void watchWith(WatchdogPollStorage watchdog) { this.watchdog = watchdog; }
+
+    /**
+     * Held while a batch is written and its votes leave the pending set. Hold it to read the database and the pending
+     * votes as one consistent view.
+     */
+    Object flushLock() { return flushLock; }
+
+    /**
+     * True from a failed write until the next successful one. Votes should then be written directly rather than
+     * queued, so acknowledged votes don't pile up in memory for the length of an outage.
+     */
+    public boolean isFailing() { return failing; }
+
+    public Integer getPendingVote(UUID pollId, UUID player) {
+        Map<UUID, Integer> inner = pending.get(pollId);
+        return inner == null ? null : inner.get(player);
+    }
+
+    /** Adds the players with a not-yet-written vote in this poll to {@code voters}. */
+    public void addPendingVotersTo(UUID pollId, Collection<UUID> voters) {
+        Map<UUID, Integer> inner = pending.get(pollId);
+        if (inner != null) voters.addAll(inner.keySet());
+    }
+
+    /** Adds this poll's not-yet-written votes to {@code tally}. */
+    public void addPendingTo(UUID pollId, Map<Integer, Integer> tally) {
+        Map<UUID, Integer> inner = pending.get(pollId);
+        if (inner == null) return;
+        for (Integer option : inner.values()) tally.merge(option, 1, Integer::sum);
+    }
+
+    /** Forgets queued votes for a poll that is being removed. */
+    public void discard(UUID pollId) {
+        pending.remove(pollId);
+        queue.removeIf(v -> {
+            if (!v.pollId.equals(pollId)) return false;
+            queued.decrementAndGet();
+            return true;
+        });
+    }
+
+    /** Writes everything queued so far, ignoring any backoff, and waits for it. Returns false if that failed. */
+    boolean flushNow(long timeoutMillis) {
+        try {
+            return flusher.submit(this::drain).get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException | ExecutionException | TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void flush() {
+        flushRequested.set(false);
+        // Backing off after a failed write; close() drains regardless
+        if (failedAttempts > 0 && System.nanoTime() - retryAtNanos < 0) return;
+        drain();
+    }
+
+    /**
+     * Writes batches until the queue is empty or a write fails. Returns false on failure. The listeners are told
+     * about the written and dropped polls once the flush lock is released.
+     */
+    private boolean drain() {
+        if (queue.isEmpty()) {
+            // Nothing left to retry, e.g. the failed batch's poll was removed
+            failing = false;
+            return true;
+        }
+        Set<UUID> flushedPolls = new HashSet<>();
+        Set<UUID> droppedPolls = new HashSet<>();
+        try {
+            synchronized (flushLock) {
+                while (!queue.isEmpty()) {
+                    List<PendingVote> batch = new ArrayList<>(Math.min(maxBatch, queued.get()));
+                    PendingVote vote;
+                    while (batch.size() < maxBatch && (vote = queue.poll()) != null) {
+                        queued.decrementAndGet();
+                        batch.add(vote);
+                    }
+                    if (batch.isEmpty()) return true;
+                    if (!write(batch, flushedPolls, droppedPolls)) return false;
+                }
+                return true;
+            }
+        } finally {
+            notifyListener(flushListener, flushedPolls);
+            notifyListener(dropListener, droppedPolls);
+        }
+    }
+
+    private boolean write(List<PendingVote> batch, Set<UUID> flushedPolls, Set<UUID> droppedPolls) {
+        Set<VoteKey> inserted;
+        try {
+            inserted = insert(batch);
+        } catch (SQLException e) {
+            if (isInvalidData(e)) {
+                writeOneByOne(batch, flushedPolls, droppedPolls);
+                return true;
+            }
+            failing = true;
+            failedAttempts++;
+            backoffNanos = backoffNanos == 0 ? intervalNanos : Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+            retryAtNanos = System.nanoTime() + backoffNanos;
+            logger.severe("Failed to write " + batch.size() + " queued votes (attempt " + failedAttempts + ", "
+                    + (queued.get() + batch.size()) + " waiting), retrying in " + TimeUnit.NANOSECONDS.toMillis(backoffNanos)
+                    + "ms: " + e.getMessage());
+            // Back in the queue, and still pending, until a write succeeds
+            queue.addAll(batch);
+            queued.addAndGet(batch.size());
+            return false;
+        }
+        if (failedAttempts > 0) logger.info("Vote writes recovered after " + failedAttempts + " failed attempts");
+        failedAttempts = 0;
+        backoffNanos = 0;
+        failing = false;
+        written(batch, inserted, flushedPolls, droppedPolls);
+        return true;
+    }
+
+    /** A batch the database rejected as invalid: write its votes singly so only the bad ones are dropped. */
+    private void writeOneByOne(List<PendingVote> batch, Set<UUID> flushedPolls, Set<UUID> droppedPolls) {
+        for (PendingVote v : batch) {
+            List<PendingVote> single = List.of(v);
+            try {
+                written(single, insert(single), flushedPolls, droppedPolls);
+            } catch (SQLException e) {
+                if (!isInvalidData(e)) {
+                    // Lost the connection halfway; the rest is retried with the next flush
+                    queue.add(v);
+                    queued.incrementAndGet();
+                    continue;
+                }
+                dropped.increment();
+                forget(v);
+                droppedPolls.add(v.pollId);
+                logger.severe("Dropped vote of " + v.player + " in poll " + v.pollId + " rejected by the database: " + e.getMessage());
+            }
+        }
+    }
+
+    // Data exceptions (22) and constraint violations (23) will fail the same way on every retry
+    private static boolean isInvalidData(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /** Inserts the batch and returns the votes the database actually stored. */
+    private Set<VoteKey> insert(List<PendingVote> batch) throws SQLException {
+        int size = batch.size();
+        UUID[] polls = new UUID[size];
+        UUID[] players = new UUID[size];
+        Integer[] options = new Integer[size];
+        Long[] times = new Long[size];
+        for (int i = 0; i < size; i++) {
+            PendingVote v = batch.get(i);
+            polls[i] = v.pollId;
+            players[i] = v.player;
+            options[i] = v.optionIndex;
+            times[i] = v.votedAt;
+        }
+        WatchdogPollStorage watch = watchdog;
+        long start = watch == null ? -1 : watch.backgroundStarted();
+        boolean failed = true;
+        try {
+            Set<VoteKey> inserted = pool.execute(c -> {
+                Array pollArray = c.connection().createArrayOf("uuid", polls);
+                Array playerArray = c.connection().createArrayOf("uuid", players);
+                Array optionArray = c.connection().createArrayOf("int4", options);
+                Array timeArray = c.connection().createArrayOf("int8", times);
+                PreparedStatement ps = c.prepare(INSERT_BATCH);
+                ps.setArray(1, pollArray);
+                ps.setArray(2, playerArray);
+                ps.setArray(3, optionArray);
+                ps.setArray(4, timeArray);
+                Set<VoteKey> rows = new HashSet<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) rows.add(new VoteKey(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class)));
+                }
+                return rows;
+            });
+            failed = false;
+            return inserted;
+        } finally {
+            if (watch != null) watch.backgroundEnded("flushVotes", start, failed, batch);
+        }
+    }
+
+    /**
+     * Retires a written batch. Votes missing from {@code inserted} were skipped by the database, because their poll
+     * was removed or the player's vote reached it first from elsewhere, and are dropped like rejected ones.
+     */
+    private void written(List<PendingVote> batch, Set<VoteKey> inserted, Set<UUID> flushedPolls, Set<UUID> droppedPolls) {
+        flushes.increment();
+        written.add(inserted.size());
+        int skipped = 0;
+        for (PendingVote v : batch) {
+            forget(v);
+            if (inserted.size() == batch.size() || inserted.contains(new VoteKey(v.pollId, v.player))) {
+                flushedPolls.add(v.pollId);
+            } else {
+                skipped++;
+                droppedPolls.add(v.pollId);
+            }
+        }
+        if (skipped > 0) {
+            dropped.add(skipped);
+            logger.warning("Dropped " + skipped + " queued votes the database skipped: their poll was removed or the player had already voted");
+        }
+    }
+
+    private static void notifyListener(Consumer<Set<UUID>> listener, Set<UUID> pollIds) {
+        if (listener != null && !pollIds.isEmpty()) listener.accept(pollIds);
+    }
+
+    private void forget(PendingVote v) {
+        Map<UUID, Integer> inner = pending.get(v.pollId);
+        if (inner != null) inner.remove(v.player, v.optionIndex);
+    }
+
+    /**
+     * Stops the periodic flush and writes whatever is still queued, retrying failed writes for at most
+     * {@code timeoutMillis}. Votes still queued after that are lost and logged as such.
+     */
+    public void close(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        flusher.execute(() -> {
+            while (!drain()) {
+                long wait = Math.min(backoffNanos, deadline - System.nanoTime());
+                if (wait <= 0) return;
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(timeoutMillis + 1000, TimeUnit.MILLISECONDS)) flusher.shutdownNow();
+        } catch (InterruptedException e) {
+            flusher.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        if (queued.get() > 0) {
+            logger.severe(queued.get() + " acknowledged votes could not be written before shutdown and are lost");
+        }
+        if (dropped.sum() > 0) logger.severe(dropped.sum() + " acknowledged votes were dropped because the database rejected or skipped them");
+    }
+
+    public int getQueuedVotes() { return queued.get(); }
+    public long getFlushes() { return flushes.sum(); }
+    public long getWrittenVotes() { return written.sum(); }
+    public long getDroppedVotes() { return dropped.sum(); }
+}
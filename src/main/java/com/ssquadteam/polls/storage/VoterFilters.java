@@ -0,0 +1,200 @@
+package com.ssquadteam.polls.storage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One Bloom filter per open poll over the players who voted in it, so "has this player voted?" can be answered "no"
+ * without asking the backend. A filter answers only after it was filled from storage, and every vote is added before
+ * it is written, so a stored vote is never missed; a "maybe" still goes to storage.
+ * <p>
+ * A filter that outgrows its expected size gets another, larger stage instead of being rebuilt, so votes added while
+ * it grows are never lost. Later stages use half the false-positive rate of the one before, keeping the total near
+ * the configured rate.
+ */
+public class VoterFilters {
+
+    public enum Answer { NOT_VOTED, MAYBE, UNKNOWN }
+
+    private final int expectedVoters;
+    private final double falsePositiveRate;
+    private final Map<UUID, Filter> filters = new ConcurrentHashMap<>();
+
+    private final LongAdder notVoted = new LongAdder();
+    private final LongAdder maybe = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    public VoterFilters(int expectedVoters, double falsePositiveRate) {
+        this.expectedVoters = Math.max(16, expectedVoters);
+        this.falsePositiveRate = Math.min(0.5, Math.max(1e-6, falsePositiveRate));
+    }
+
+    /** Registers an empty filter that records votes but answers nothing yet. Returns null if the poll has one. */
+    Filter install(UUID pollId) {
+        Filter filter = new Filter(expectedVoters, falsePositiveRate);
+        return filters.putIfAbsent(pollId, filter) == null ? filter : null;
+    }
+
+    void recordVote(UUID pollId, UUID player) {
+        Filter filter = filters.get(pollId);
+        if (filter != null) filter.put(player);
+    }
+
+    Answer check(UUID pollId, UUID player) {
+        Filter filter = filters.get(pollId);
+        if (filter == null || !filter.ready) return Answer.UNKNOWN;
+        if (!filter.mightContain(player)) {
+            notVoted.increment();
+            return Answer.NOT_VOTED;
+        }
+        maybe.increment();
+        return Answer.MAYBE;
+    }
+
+    /** Storage said "not voted" after the filter said "maybe". */
+    void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    void remove(UUID pollId) {
+        filters.remove(pollId);
+    }
+
+    public int polls() { return filters.size(); }
+    public long notVotedAnswers() { return notVoted.sum(); }
+    public long maybeAnswers() { return maybe.sum(); }
+    public long falsePositives() { return falsePositives.sum(); }
+    public double targetFalsePositiveRate() { return falsePositiveRate; }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Filter filter : filters.values()) bytes += filter.memoryBytes();
+        return bytes;
+    }
+
+    /** The worst false-positive rate any filter should currently have, given how full it is. */
+    public double estimatedFalsePositiveRate() {
+        double worst = 0;
+        for (Filter filter : filters.values()) worst = Math.max(worst, filter.estimatedFalsePositiveRate());
+        return worst;
+    }
+
+    static final class Filter {
+        private volatile Stage[] stages;
+        private volatile boolean ready;
+
+        Filter(int expected, double falsePositiveRate) {
+            this.stages = new Stage[]{new Stage(expected, falsePositiveRate / 2)};
+        }
+
+        /** Adds the stored voters and starts answering. */
+        void fill(Collection<UUID> voters) {
+            for (UUID voter : voters) put(voter);
+            ready = true;
+        }
+
+        void put(UUID player) {
+            Stage[] current = stages;
+            Stage last = current[current.length - 1];
+            if (last.isFull()) last = grow(current);
+            last.put(player);
+        }
+
+        boolean mightContain(UUID player) {
+            for (Stage stage : stages) {
+                if (stage.mightContain(player)) return true;
+            }
+            return false;
+        }
+
+        private synchronized Stage grow(Stage[] seen) {
+            Stage[] current = stages;
+            Stage last = current[current.length - 1];
+            if (current != seen && !last.isFull()) return last;
+            Stage[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = new Stage(last.capacity * 2, last.falsePositiveRate / 2);
+            stages = grown;
+            return grown[current.length];
+        }
+
+        long memoryBytes() {
+            long bytes = 0;
+            for (Stage stage : stages) bytes += stage.bits.length() * 8L;
+            return bytes;
+        }
+
+        double estimatedFalsePositiveRate() {
+            double allNegative = 1;
+            for (Stage stage : stages) allNegative *= 1 - stage.estimatedFalsePositiveRate();
+            return 1 - allNegative;
+        }
+    }
+
+    /** A plain Bloom filter with double hashing over the two halves of the player UUID. */
+    private static final class Stage {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashes;
+        private final int capacity;
+        private final double falsePositiveRate;
+        private final AtomicInteger insertions = new AtomicInteger();
+
+        Stage(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            double ln2 = Math.log(2);
+            long optimal = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            int words = (int) Math.min(Integer.MAX_VALUE / 64, Math.max(1, (optimal + 63) / 64));
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = words * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+        }
+
+        boolean isFull() {
+            return insertions.get() >= capacity;
+        }
+
+        void put(UUID player) {
+            long h1 = mix(player.getMostSignificantBits());
+            long h2 = mix(player.getLeastSignificantBits()) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                long old = bits.get(word);
+                while ((old & mask) == 0 && !bits.compareAndSet(word, old, old | mask)) old = bits.get(word);
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(UUID player) {
+            long h1 = mix(player.getMostSignificantBits());
+            long h2 = mix(player.getLeastSignificantBits()) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        double estimatedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-(double) hashes * insertions.get() / bitCount), hashes);
+        }
+
+        // MurmurHash3 finalizer; the version and variant bits of a UUID never change, so both halves are mixed first
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
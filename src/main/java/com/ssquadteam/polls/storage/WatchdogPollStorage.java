@@ -0,0 +1,293 @@
+package com.ssquadteam.polls.storage;
+
+import com.ssquadteam.polls.model.ClosedPolls;
+import com.ssquadteam.polls.model.Poll;
+import com.ssquadteam.polls.model.PollCursor;
+import com.ssquadteam.polls.model.PollPage;
+import com.ssquadteam.polls.model.PollStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Watches calls into the wrapped storage while enabled. A call made on a tick or region thread is blocking I/O where
+ * it must not happen: its call site is counted and logged the first time it is seen. Any call slower than the
+ * threshold, or made on a tick thread, goes to the slow-op log with its SQL, the shape of its arguments, its duration
+ * and its thread. While disabled every call goes straight through.
+ * <p>
+ * Gameplay reaches storage through {@link AsyncPollStorage} on virtual threads, so its futures report a tick thread
+ * waiting on them ({@link #waitStarted}) the same way, and backend work on its own threads, like the write-behind
+ * flushes, reports its SQL through {@link #backgroundStarted}.
+ */
+public class WatchdogPollStorage implements PollStorage {
+
+    private static final String STORAGE_PACKAGE = WatchdogPollStorage.class.getPackageName() + ".";
+    private static final int MAX_SQL_LENGTH = 300;
+    private static final Object[] NO_ARGS = new Object[0];
+
+    private final PollStorage delegate;
+    private final SlowOpLog log;
+    private final Logger logger;
+    private final BooleanSupplier onTickThread;
+    private final Map<String, LongAdder> blockingSites = new ConcurrentHashMap<>();
+    private final LongAdder blockingCalls = new LongAdder();
+    private final LongAdder slowCalls = new LongAdder();
+    private volatile boolean enabled;
+    private volatile long thresholdNanos;
+
+    public WatchdogPollStorage(PollStorage delegate, SlowOpLog log, Logger logger, BooleanSupplier onTickThread,
+                               boolean enabled, long thresholdMillis) {
+        this.delegate = delegate;
+        this.log = log;
+        this.logger = logger;
+        this.onTickThread = onTickThread;
+        this.enabled = enabled;
+        setThresholdMillis(thresholdMillis);
+    }
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+    public long getThresholdMillis() { return thresholdNanos / 1_000_000; }
+    public void setThresholdMillis(long millis) { this.thresholdNanos = Math.max(0, millis) * 1_000_000; }
+    public long getBlockingCalls() { return blockingCalls.sum(); }
+    public long getSlowCalls() { return slowCalls.sum(); }
+
+    /** Tick-thread call sites seen so far, with how often each one blocked. */
+    public Map<String, Long> getBlockingSites() {
+        Map<String, Long> sites = new LinkedHashMap<>();
+        blockingSites.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(e -> sites.put(e.getKey(), e.getValue().sum()));
+        return sites;
+    }
+
+    public void resetCounts() {
+        blockingSites.clear();
+        blockingCalls.reset();
+        slowCalls.reset();
+    }
+
+    @Override
+    public void init() { delegate.init(); }
+
+    @Override
+    public void close() { delegate.close(); }
+
+    @Override
+    public void savePoll(Poll poll) {
+        if (!enabled) { delegate.savePoll(poll); return; }
+        watch("savePoll", () -> { delegate.savePoll(poll); return null; }, poll);
+    }
+
+    @Override
+    public Poll getPoll(UUID id) {
+        return enabled ? watch("getPoll", () -> delegate.getPoll(id), id) : delegate.getPoll(id);
+    }
+
+    @Override
+    public Poll findByIdOrCode(String idOrCode) {
+        return enabled ? watch("findByIdOrCode", () -> delegate.findByIdOrCode(idOrCode), idOrCode) : delegate.findByIdOrCode(idOrCode);
+    }
+
+    @Override
+    public List<Poll> getAllPolls() {
+        return enabled ? watch("getAllPolls", delegate::getAllPolls) : delegate.getAllPolls();
+    }
+
+    @Override
+    public PollPage listPolls(PollStatus status, PollCursor after, int limit) {
+        return enabled ? watch("listPolls", () -> delegate.listPolls(status, after, limit), status, after, limit)
+                : delegate.listPolls(status, after, limit);
+    }
+
+    @Override
+    public void removePoll(UUID id) {
+        if (!enabled) { delegate.removePoll(id); return; }
+        watch("removePoll", () -> { delegate.removePoll(id); return null; }, id);
+    }
+
+    @Override
+    public List<Poll> findOpenPolls(long closesBefore) {
+        return enabled ? watch("findOpenPolls", () -> delegate.findOpenPolls(closesBefore), closesBefore) : delegate.findOpenPolls(closesBefore);
+    }
+
+    @Override
+    public List<Poll> closePolls(Collection<UUID> ids) {
+        return enabled ? watch("closePolls", () -> delegate.closePolls(ids), ids) : delegate.closePolls(ids);
+    }
+
+    @Override
+    public ClosedPolls closePollsCounted(Collection<UUID> ids) {
+        return enabled ? watch("closePollsCounted", () -> delegate.closePollsCounted(ids), ids) : delegate.closePollsCounted(ids);
+    }
+
+    // Answered from memory and meant for the main thread, so never watched
+    @Override
+    public List<String> completeCodes(String prefix, int limit) { return delegate.completeCodes(prefix, limit); }
+
+    @Override
+    public boolean saveVote(UUID pollId, UUID player, int optionIndex) {
+        return enabled ? watch("saveVote", () -> delegate.saveVote(pollId, player, optionIndex), pollId, player, optionIndex)
+                : delegate.saveVote(pollId, player, optionIndex);
+    }
+
+    @Override
+    public boolean hasVoted(UUID pollId, UUID player) {
+        return enabled ? watch("hasVoted", () -> delegate.hasVoted(pollId, player), pollId, player) : delegate.hasVoted(pollId, player);
+    }
+
+    @Override
+    public Integer getPlayerVote(UUID pollId, UUID player) {
+        return enabled ? watch("getPlayerVote", () -> delegate.getPlayerVote(pollId, player), pollId, player)
+                : delegate.getPlayerVote(pollId, player);
+    }
+
+    @Override
+    public List<UUID> getVoters(UUID pollId) {
+        return enabled ? watch("getVoters", () -> delegate.getVoters(pollId), pollId) : delegate.getVoters(pollId);
+    }
+
+    @Override
+    public Map<Integer, Integer> getVoteTally(UUID pollId) {
+        return enabled ? watch("getVoteTally", () -> delegate.getVoteTally(pollId), pollId) : delegate.getVoteTally(pollId);
+    }
+
+    @Override
+    public int[] getVoteCounts(UUID pollId) {
+        return enabled ? watch("getVoteCounts", () -> delegate.getVoteCounts(pollId), pollId) : delegate.getVoteCounts(pollId);
+    }
+
+    @Override
+    public Map<UUID, int[]> getVoteCounts(Collection<UUID> pollIds) {
+        return enabled ? watch("getVoteCounts", () -> delegate.getVoteCounts(pollIds), pollIds) : delegate.getVoteCounts(pollIds);
+    }
+
+    @Override
+    public int repairTallies() {
+        return enabled ? watch("repairTallies", delegate::repairTallies) : delegate.repairTallies();
+    }
+
+    private <T> T watch(String operation, Supplier<T> call, Object... args) {
+        boolean tick = onTickThread.getAsBoolean();
+        String site = null;
+        if (tick) {
+            site = callSite();
+            blocked(operation, site);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        SqlTrace.begin();
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            List<String> sql = SqlTrace.end();
+            long nanos = System.nanoTime() - start;
+            if (tick || nanos >= thresholdNanos) {
+                slowCalls.increment();
+                log.append(describe(operation, args, nanos, tick, failed, site, sql));
+            }
+        }
+    }
+
+    /**
+     * Called before a thread waits on a storage future that has not completed yet. While enabled and on a tick thread
+     * the wait counts as a blocking call and its call site is returned; otherwise returns null and the wait is not
+     * watched.
+     */
+    String waitStarted(String operation) {
+        if (!enabled || !onTickThread.getAsBoolean()) return null;
+        String site = callSite();
+        blocked(operation + ".join", site);
+        return site;
+    }
+
+    /** Logs a wait that {@link #waitStarted} returned a call site for. */
+    void waitEnded(String operation, String site, long start, boolean failed) {
+        slowCalls.increment();
+        log.append(describe(operation + ".join", NO_ARGS, System.nanoTime() - start, true, failed, site, List.of()));
+    }
+
+    /**
+     * Called before a backend runs statements on its own thread; returns the start time, or -1 while disabled.
+     * {@link #backgroundEnded} must follow on the same thread.
+     */
+    long backgroundStarted() {
+        if (!enabled) return -1;
+        SqlTrace.begin();
+        return System.nanoTime();
+    }
+
+    /** Logs background work started with {@link #backgroundStarted} if it took longer than the threshold. */
+    void backgroundEnded(String operation, long start, boolean failed, Object... args) {
+        if (start < 0) return;
+        List<String> sql = SqlTrace.end();
+        long nanos = System.nanoTime() - start;
+        if (nanos >= thresholdNanos) {
+            slowCalls.increment();
+            log.append(describe(operation, args, nanos, false, failed, null, sql));
+        }
+    }
+
+    private void blocked(String operation, String site) {
+        blockingCalls.increment();
+        LongAdder seen = blockingSites.computeIfAbsent(operation + " at " + site, k -> new LongAdder());
+        if (seen.sum() == 0) {
+            logger.warning("Blocking storage call " + operation + " on " + Thread.currentThread().getName() + " from " + site);
+        }
+        seen.increment();
+    }
+
+    private static String describe(String operation, Object[] args, long nanos, boolean tick, boolean failed,
+                                   String site, List<String> sql) {
+        StringBuilder line = new StringBuilder(256)
+                .append(Instant.now())
+                .append(' ').append(String.format(Locale.ROOT, "%.1fms", nanos / 1_000_000.0))
+                .append(' ').append(operation).append('(');
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) line.append(", ");
+            line.append(shape(args[i]));
+        }
+        line.append(") thread=").append(Thread.currentThread().getName());
+        if (tick) line.append(" TICK-THREAD site=").append(site);
+        if (failed) line.append(" FAILED");
+        line.append(" sql=[");
+        for (int i = 0; i < sql.size(); i++) {
+            if (i > 0) line.append(" | ");
+            String statement = sql.get(i).replaceAll("\\s+", " ").trim();
+            line.append(statement.length() > MAX_SQL_LENGTH ? statement.substring(0, MAX_SQL_LENGTH) + "..." : statement);
+        }
+        return line.append(']').toString();
+    }
+
+    /** The type and size of an argument, without its value. */
+    private static String shape(Object arg) {
+        if (arg == null) return "null";
+        if (arg instanceof Collection<?> c) return arg.getClass().getSimpleName() + "[" + c.size() + "]";
+        if (arg instanceof CharSequence s) return "String[" + s.length() + "]";
+        return arg.getClass().getSimpleName();
+    }
+
+    /** The first frame outside storage and the JDK, i.e. the plugin code that made the call. */
+    private static String callSite() {
+        Optional<StackWalker.StackFrame> frame = StackWalker.getInstance().walk(frames -> frames
+                .filter(f -> !f.getClassName().startsWith(STORAGE_PACKAGE)
+                        && !f.getClassName().startsWith("java.")
+                        && !f.getClassName().startsWith("jdk."))
+                .findFirst());
+        return frame.map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                + "." + f.getMethodName() + "(" + f.getFileName() + ":" + f.getLineNumber() + ")").orElse("unknown");
+    }
+}
@@ -0,0 +1,72 @@
+package com.ssquadteam.polls.storage;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A storage future that reports to the watchdog when a thread waits on it before it has completed, since waiting on
+ * a tick thread blocks the tick just like calling the storage directly. Futures derived from it with
+ * {@code thenApply} and the like report their waits the same way.
+ */
+final class WatchedFuture<T> extends CompletableFuture<T> {
+
+    private final WatchdogPollStorage watchdog;
+    private final String operation;
+
+    WatchedFuture(WatchdogPollStorage watchdog, String operation) {
+        this.watchdog = watchdog;
+        this.operation = operation;
+    }
+
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new WatchedFuture<>(watchdog, operation);
+    }
+
+    @Override
+    public T join() {
+        String site = isDone() ? null : watchdog.waitStarted(operation);
+        if (site == null) return super.join();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = super.join();
+            failed = false;
+            return result;
+        } finally {
+            watchdog.waitEnded(operation, site, start, failed);
+        }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        String site = isDone() ? null : watchdog.waitStarted(operation);
+        if (site == null) return super.get();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = super.get();
+            failed = false;
+            return result;
+        } finally {
+            watchdog.waitEnded(operation, site, start, failed);
+        }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        String site = isDone() ? null : watchdog.waitStarted(operation);
+        if (site == null) return super.get(timeout, unit);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = super.get(timeout, unit);
+            failed = false;
+            return result;
+        } finally {
+            watchdog.waitEnded(operation, site, start, failed);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- Tables as created by versions before schema migrations; existing databases already have them
+CREATE TABLE IF NOT EXISTS polls (
+    id UUID PRIMARY KEY,
+    code TEXT UNIQUE,
+    question TEXT NOT NULL,
+    options_json TEXT NOT NULL,
+    created_at BIGINT NOT NULL,
+    closes_at BIGINT NOT NULL,
+    status TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS votes (
+    poll_id UUID NOT NULL,
+    player_uuid UUID NOT NULL,
+    option_index INTEGER NOT NULL,
+    voted_at BIGINT NOT NULL,
+    PRIMARY KEY (poll_id, player_uuid),
+    FOREIGN KEY (poll_id) REFERENCES polls(id) ON DELETE CASCADE
+);
@@ -0,0 +1,5 @@
+-- Code lookups compare lower(code), which the UNIQUE(code) index cannot serve
+CREATE INDEX IF NOT EXISTS polls_code_lower_idx ON polls (lower(code));
+
+-- Open polls by closing time, for the startup sweep
+CREATE INDEX IF NOT EXISTS polls_status_closes_idx ON polls (status, closes_at);
@@ -0,0 +1,3 @@
+-- Keyset paging for /poll list, newest first, overall and per status
+CREATE INDEX IF NOT EXISTS polls_created_idx ON polls (created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS polls_status_created_idx ON polls (status, created_at DESC, id DESC);
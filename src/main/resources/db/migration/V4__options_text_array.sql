@@ -0,0 +1,5 @@
+-- Store options as a native array instead of a JSON string
+ALTER TABLE polls ADD COLUMN options TEXT[];
+UPDATE polls SET options = ARRAY(SELECT json_array_elements_text(options_json::json));
+ALTER TABLE polls ALTER COLUMN options SET NOT NULL;
+ALTER TABLE polls DROP COLUMN options_json;
@@ -0,0 +1,13 @@
+-- Vote counts per option, kept current by the vote inserts so a tally read is one indexed lookup
+CREATE TABLE IF NOT EXISTS poll_tallies (
+    poll_id UUID NOT NULL,
+    option_index INTEGER NOT NULL,
+    count INTEGER NOT NULL,
+    PRIMARY KEY (poll_id, option_index),
+    FOREIGN KEY (poll_id) REFERENCES polls(id) ON DELETE CASCADE
+);
+
+-- Count the votes recorded so far
+INSERT INTO poll_tallies (poll_id, option_index, count)
+SELECT poll_id, option_index, COUNT(*) FROM votes GROUP BY poll_id, option_index
+ON CONFLICT (poll_id, option_index) DO UPDATE SET count = EXCLUDED.count;
@@ -0,0 +1,111 @@
+package com.ssquadteam.polls.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Servers joined over one {@link LoopbackTransport}, each with its own {@link ClusterEventBus}.
+ */
+class ClusterEventBusTest {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterEventBusTest.class.getName());
+
+    private final LoopbackTransport network = new LoopbackTransport();
+    private final List<ClusterEventBus> buses = new ArrayList<>();
+
+    private ClusterEventBus server(LoopbackTransport transport, List<ClusterEvent> events) {
+        ClusterEventBus bus = new ClusterEventBus(transport, LOGGER);
+        bus.subscribe(events::add);
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    @AfterEach
+    void closeBuses() {
+        buses.forEach(ClusterEventBus::close);
+    }
+
+    @Test
+    void ownEventsAreNotDeliveredBack() {
+        List<ClusterEvent> first = new CopyOnWriteArrayList<>();
+        List<ClusterEvent> second = new CopyOnWriteArrayList<>();
+        ClusterEventBus a = server(network, first);
+        server(network.join(), second);
+        UUID pollId = UUID.randomUUID();
+
+        a.publish(ClusterEvent.Type.POLL_CREATED, pollId);
+
+        assertTrue(first.isEmpty());
+        assertEquals(1, second.size());
+        assertEquals(ClusterEvent.Type.POLL_CREATED, second.get(0).getType());
+        assertEquals(pollId, second.get(0).getPollId());
+        assertEquals(a.getNodeId(), second.get(0).getOrigin());
+        assertEquals(0, a.getReceived());
+    }
+
+    @Test
+    void reconnectRaisesResyncOnlyLocally() {
+        List<ClusterEvent> first = new CopyOnWriteArrayList<>();
+        List<ClusterEvent> second = new CopyOnWriteArrayList<>();
+        server(network, first);
+        LoopbackTransport secondTransport = network.join();
+        ClusterEventBus b = server(secondTransport, second);
+
+        secondTransport.reconnect();
+
+        assertTrue(first.isEmpty());
+        assertEquals(1, second.size());
+        assertEquals(ClusterEvent.Type.RESYNC, second.get(0).getType());
+        assertNull(second.get(0).getPollId());
+        assertEquals(0, b.getPublished());
+    }
+
+    @Test
+    void pollClosedCountsReachEveryOtherServer() {
+        List<ClusterEvent> first = new CopyOnWriteArrayList<>();
+        List<ClusterEvent> second = new CopyOnWriteArrayList<>();
+        List<ClusterEvent> third = new CopyOnWriteArrayList<>();
+        ClusterEventBus a = server(network, first);
+        ClusterEventBus b = server(network.join(), second);
+        ClusterEventBus c = server(network.join(), third);
+        UUID pollId = UUID.randomUUID();
+        int[] counts = {3, 1, 0, 0, 2, 0};
+
+        a.publish(ClusterEvent.Type.POLL_CLOSED, pollId, counts);
+
+        assertTrue(first.isEmpty());
+        for (List<ClusterEvent> events : List.of(second, third)) {
+            assertEquals(1, events.size());
+            ClusterEvent event = events.get(0);
+            assertEquals(ClusterEvent.Type.POLL_CLOSED, event.getType());
+            assertEquals(pollId, event.getPollId());
+            assertArrayEquals(counts, event.getCounts());
+        }
+        assertEquals(1, b.getReceived());
+        assertEquals(1, c.getReceived());
+    }
+
+    @Test
+    void malformedMessagesAreIgnored() {
+        List<ClusterEvent> events = new CopyOnWriteArrayList<>();
+        ClusterEventBus bus = server(network, events);
+
+        network.publish("not json {");
+        network.publish("{\"pollId\":\"" + UUID.randomUUID() + "\"}");
+
+        assertTrue(events.isEmpty());
+        assertEquals(0, bus.getReceived());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ssquadteam.polls.cluster;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-process transport for tests: every endpoint joined to the same loopback receives every message, on the
+ * publishing thread.
+ */
+public class LoopbackTransport implements ClusterTransport {
+
+    private final Set<LoopbackTransport> network;
+    private volatile Receiver receiver;
+
+    public LoopbackTransport() {
+        this(new CopyOnWriteArraySet<>());
+    }
+
+    private LoopbackTransport(Set<LoopbackTransport> network) {
+        this.network = network;
+    }
+
+    /** A new endpoint on the same loopback, standing in for another server. */
+    public LoopbackTransport join() {
+        return new LoopbackTransport(network);
+    }
+
+    @Override
+    public void start(Receiver receiver) {
+        this.receiver = receiver;
+        network.add(this);
+    }
+
+    @Override
+    public void publish(String message) {
+        for (LoopbackTransport peer : network) {
+            Receiver target = peer.receiver;
+            if (target != null) target.onMessage(message);
+        }
+    }
+
+    /** Behaves as if the connection dropped and came back. */
+    public void reconnect() {
+        Receiver target = receiver;
+        if (target != null) target.onReconnect();
+    }
+
+    @Override
+    public void close() {
+        network.remove(this);
+        receiver = null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ssquadteam.polls.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Times {@link ClosingScheduler} on a virtual clock: 100k polls spread over a week, with the wheel size the plugin
+ * uses. Run with {@code ./gradlew closingSchedulerBenchmark}. Each round schedules, reschedules and cancels every poll,
+ * then advances a week one second at a time and checks that each remaining poll closed exactly at its deadline. The
+ * last round is reported; the earlier ones are warm-up.
+ */
+public final class ClosingSchedulerBenchmark {
+
+    private static final int POLLS = 100_000;
+    private static final int WHEEL_SLOTS = 4096;
+    private static final long WEEK = 7 * 24 * 3600;
+    private static final long START = 1_700_000_000L;
+    private static final int ROUNDS = 8;
+
+    private long now;
+
+    public static void main(String[] args) {
+        ClosingSchedulerBenchmark benchmark = new ClosingSchedulerBenchmark();
+        for (int round = 1; round <= ROUNDS; round++) benchmark.round(round == ROUNDS);
+    }
+
+    private void round(boolean report) {
+        SplittableRandom random = new SplittableRandom(42);
+        UUID[] ids = new UUID[POLLS];
+        long[] deadlines = new long[POLLS];
+        long[] moved = new long[POLLS];
+        for (int i = 0; i < POLLS; i++) {
+            ids[i] = new UUID(random.nextLong(), random.nextLong());
+            deadlines[i] = START + 1 + random.nextLong(WEEK);
+            moved[i] = START + 1 + random.nextLong(WEEK);
+        }
+        now = START;
+        ClosingScheduler scheduler = new ClosingScheduler(WHEEL_SLOTS, () -> now);
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < POLLS; i++) scheduler.schedule(ids[i], deadlines[i]);
+        long t1 = System.nanoTime();
+        for (int i = 0; i < POLLS; i++) scheduler.schedule(ids[i], moved[i]);
+        long t2 = System.nanoTime();
+        // Every tenth poll is cancelled; the rest must close on time
+        for (int i = 0; i < POLLS; i += 10) scheduler.cancel(ids[i]);
+        long t3 = System.nanoTime();
+        int cancelled = (POLLS + 9) / 10;
+
+        Map<UUID, Long> expected = new HashMap<>();
+        for (int i = 0; i < POLLS; i++) {
+            if (i % 10 != 0) expected.put(ids[i], moved[i]);
+        }
+        List<UUID> late = new ArrayList<>();
+        int closed = 0;
+        long t4 = System.nanoTime();
+        for (long second = 1; second <= WEEK; second++) {
+            now = START + second;
+            for (UUID id : scheduler.advance()) {
+                closed++;
+                Long deadline = expected.remove(id);
+                if (deadline == null || deadline != now) late.add(id);
+            }
+        }
+        long t5 = System.nanoTime();
+
+        if (!report) return;
+        System.out.printf("polls=%d wheel=%d simulated=%ds%n", POLLS, WHEEL_SLOTS, WEEK);
+        System.out.printf("schedule     %8.1f ns/op%n", (t1 - t0) / (double) POLLS);
+        System.out.printf("reschedule   %8.1f ns/op%n", (t2 - t1) / (double) POLLS);
+        System.out.printf("cancel       %8.1f ns/op%n", (t3 - t2) / (double) cancelled);
+        System.out.printf("advance      %8.1f ns per simulated second%n", (t5 - t4) / (double) WEEK);
+        System.out.printf("closed=%d on time=%d late or unexpected=%d never closed=%d%n",
+                closed, closed - late.size(), late.size(), expected.size());
+        if (!late.isEmpty() || !expected.isEmpty()) throw new AssertionError("polls did not close at their deadlines");
+    }
+}